@@ -0,0 +1,96 @@
+package u5w2d5.etm.benchmark;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.BeanUtils;
+
+import u5w2d5.etm.mapper.BookingMapper;
+import u5w2d5.etm.mapper.BookingMapperImpl;
+import u5w2d5.etm.mapper.TripMapper;
+import u5w2d5.etm.mapper.TripMapperImpl;
+import u5w2d5.etm.model.Booking;
+import u5w2d5.etm.model.Employee;
+import u5w2d5.etm.model.Trip;
+import u5w2d5.etm.model.TripStatus;
+import u5w2d5.etm.response.BookingResponseDTO;
+import u5w2d5.etm.response.TripResponseDTO;
+
+/**
+ * Costo della conversione di un singolo oggetto entità -> DTO:
+ * - beanUtils*: BeanUtils.copyProperties (reflection + property descriptor)
+ * - mapStruct*: mapper generato da MapStruct in fase di compilazione
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DtoMappingBenchmark {
+
+    private final TripMapper tripMapper = new TripMapperImpl();
+    private final BookingMapper bookingMapper = new BookingMapperImpl();
+
+    private Trip trip;
+    private Booking booking;
+    private List<Long> employeeIds;
+
+    @Setup
+    public void setUp() {
+        trip = new Trip();
+        trip.setId(42L);
+        trip.setDescription("Trasferta di benchmark");
+        trip.setStartDate(LocalDate.of(2025, 3, 1));
+        trip.setEndDate(LocalDate.of(2025, 3, 5));
+        trip.setStatus(TripStatus.SCHEDULED);
+        trip.setCapacity(30);
+        employeeIds = List.of(1L, 2L, 3L);
+
+        Employee employee = new Employee();
+        employee.setId(7L);
+        booking = new Booking();
+        booking.setId(99L);
+        booking.setTrip(trip);
+        booking.setEmployee(employee);
+        booking.setRequestDate(LocalDateTime.of(2025, 2, 1, 9, 0));
+        booking.setNotes("Finestrino");
+    }
+
+    @Benchmark
+    public TripResponseDTO beanUtilsTrip() {
+        TripResponseDTO tripDTO = new TripResponseDTO();
+        BeanUtils.copyProperties(trip, tripDTO);
+        tripDTO.setEmployeeIds(employeeIds);
+        return tripDTO;
+    }
+
+    @Benchmark
+    public TripResponseDTO mapStructTrip() {
+        return tripMapper.toResponse(trip, employeeIds);
+    }
+
+    @Benchmark
+    public BookingResponseDTO beanUtilsBooking() {
+        BookingResponseDTO bookingDTO = new BookingResponseDTO();
+        BeanUtils.copyProperties(booking, bookingDTO);
+        return bookingDTO;
+    }
+
+    @Benchmark
+    public BookingResponseDTO mapStructBooking() {
+        return bookingMapper.toResponse(booking);
+    }
+}
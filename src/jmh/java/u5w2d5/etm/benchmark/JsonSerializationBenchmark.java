@@ -0,0 +1,74 @@
+package u5w2d5.etm.benchmark;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import u5w2d5.etm.model.TripStatus;
+import u5w2d5.etm.response.EmployeeResponseDTO;
+import u5w2d5.etm.response.TripResponseDTO;
+
+/**
+ * Serializzazione Jackson delle liste restituite da GET /api/trips e GET
+ * /api/employees, con lo stesso ObjectMapper di base configurato da Spring
+ * Boot (moduli java.time, date come stringhe ISO).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonSerializationBenchmark {
+
+    @Param({ "100", "1000", "10000" })
+    private int size;
+
+    private ObjectMapper objectMapper;
+    private List<TripResponseDTO> trips;
+    private List<EmployeeResponseDTO> employees;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        trips = new ArrayList<>(size);
+        employees = new ArrayList<>(size);
+        LocalDate start = LocalDate.of(2025, 1, 1);
+        for (int i = 0; i < size; i++) {
+            long id = i + 1;
+            trips.add(new TripResponseDTO(id, "Trasferta numero " + id, start.plusDays(i % 365),
+                    start.plusDays(i % 365 + 3), TripStatus.SCHEDULED, 30, List.of(id, id + 1, id + 2)));
+            employees.add(new EmployeeResponseDTO(id, "user" + id, "Nome" + id, "Cognome" + id,
+                    "user" + id + "@example.com", "https://example.com/avatar/" + id + ".png",
+                    List.of(id, id + 1)));
+        }
+    }
+
+    @Benchmark
+    public byte[] trips() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(trips);
+    }
+
+    @Benchmark
+    public byte[] employees() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(employees);
+    }
+}
@@ -0,0 +1,92 @@
+package u5w2d5.etm.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import jakarta.servlet.ServletException;
+import u5w2d5.etm.auth.JwtRequestFilter;
+import u5w2d5.etm.auth.JwtTokenUtil;
+import u5w2d5.etm.auth.repository.AppUserRepository;
+import u5w2d5.etm.auth.service.TokenVersionRegistry;
+
+/**
+ * Costo del filtro JWT per una richiesta autenticata, senza database: lo
+ * UserDetailsService restituisce sempre lo stesso utente.
+ * - stateless=false: verifica del token + caricamento dell'utente
+ * - stateless=true: principal costruito dai claims + controllo della versione
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtRequestFilterBenchmark {
+
+    private static final String SECRET = "benchmark-secret-key-benchmark-secret-key-0123456789";
+
+    @Param({ "false", "true" })
+    private boolean stateless;
+
+    private JwtRequestFilter filter;
+    private String authorizationHeader;
+
+    @Setup
+    public void setUp() {
+        JwtTokenUtil jwtTokenUtil = new JwtTokenUtil();
+        jwtTokenUtil.setSecretKey(SECRET);
+        jwtTokenUtil.setExpirationTime(TimeUnit.HOURS.toMillis(1));
+        jwtTokenUtil.setStateless(stateless);
+
+        UserDetails user = new User("benchmark", "{noop}password",
+                List.of(new SimpleGrantedAuthority("ROLE_USER")));
+        // Come CustomUserDetailsService: una copia nuova per ogni richiesta
+        UserDetailsService userDetailsService = username -> User.withUserDetails(user).build();
+
+        TokenVersionRegistry tokenVersionRegistry = new TokenVersionRegistry(
+                Mockito.mock(AppUserRepository.class), jwtTokenUtil);
+        tokenVersionRegistry.refresh();
+        tokenVersionRegistry.update(user.getUsername(), 0L);
+
+        filter = new JwtRequestFilter(userDetailsService, jwtTokenUtil, tokenVersionRegistry,
+                new SimpleMeterRegistry());
+        authorizationHeader = "Bearer " + jwtTokenUtil.generateToken(user, 0L);
+    }
+
+    @Benchmark
+    public Authentication doFilter() throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/trips");
+        request.addHeader("Authorization", authorizationHeader);
+        try {
+            filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+            return SecurityContextHolder.getContext().getAuthentication();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
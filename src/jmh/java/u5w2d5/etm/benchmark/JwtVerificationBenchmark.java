@@ -0,0 +1,87 @@
+package u5w2d5.etm.benchmark;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import u5w2d5.etm.auth.JwtClaims;
+import u5w2d5.etm.auth.JwtTokenUtil;
+
+/**
+ * Confronta la verifica del JWT prima e dopo il parse unico:
+ * - legacy: tre parse per richiesta, ognuno con parser e chiave nuovi
+ * - prebuiltParser: un parse con parser e chiave riusati
+ * - verifyToken: il percorso attuale del filtro (parse + cache dei claims)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtVerificationBenchmark {
+
+    private static final String SECRET = "benchmark-secret-key-benchmark-secret-key-0123456789";
+
+    private JwtTokenUtil jwtTokenUtil;
+    private JwtParser prebuiltParser;
+    private UserDetails userDetails;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtTokenUtil = new JwtTokenUtil();
+        jwtTokenUtil.setSecretKey(SECRET);
+        jwtTokenUtil.setExpirationTime(TimeUnit.HOURS.toMillis(1));
+
+        prebuiltParser = Jwts.parserBuilder().setSigningKey(Keys.hmacShaKeyFor(SECRET.getBytes())).build();
+        userDetails = new User("benchmark", "", List.of(new SimpleGrantedAuthority("ROLE_USER")));
+        token = jwtTokenUtil.generateToken(userDetails);
+    }
+
+    @Benchmark
+    public boolean legacy() {
+        String username = legacyClaims().getSubject();
+        boolean valid = legacyClaims().getSubject().equals(userDetails.getUsername());
+        Date expiration = legacyClaims().getExpiration();
+        return username != null && valid && !expiration.before(new Date());
+    }
+
+    @Benchmark
+    public boolean prebuiltParser() {
+        Claims claims = prebuiltParser.parseClaimsJws(token).getBody();
+        return claims.getSubject().equals(userDetails.getUsername()) && !claims.getExpiration().before(new Date());
+    }
+
+    @Benchmark
+    public boolean verifyToken() {
+        JwtClaims claims = jwtTokenUtil.verifyToken(token);
+        return jwtTokenUtil.validateClaims(claims, userDetails);
+    }
+
+    private Claims legacyClaims() {
+        return Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(SECRET.getBytes()))
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+}
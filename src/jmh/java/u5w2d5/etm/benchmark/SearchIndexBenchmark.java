@@ -0,0 +1,85 @@
+package u5w2d5.etm.benchmark;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import u5w2d5.etm.model.Trip;
+import u5w2d5.etm.repository.EmployeeRepository;
+import u5w2d5.etm.repository.TripRepository;
+import u5w2d5.etm.response.SearchResultDTO;
+import u5w2d5.etm.service.SearchIndex;
+
+/**
+ * Latenza di GET /api/search su un indice con 100.000 dipendenti e 10.000
+ * viaggi (i volumi di etm.bulk-data.scale=10):
+ * - prefissi corti con migliaia di corrispondenze ("ma")
+ * - più parole ("mario ro")
+ * - nessuna corrispondenza
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchIndexBenchmark {
+
+    private static final String[] FIRST_NAMES = { "Mario", "Maria", "Marco", "Luca", "Giulia", "Anna", "Paolo",
+            "Francesca", "Nicolò", "Chiara" };
+    private static final String[] LAST_NAMES = { "Rossi", "Russo", "Ferrari", "Esposito", "Bianchi", "Romano",
+            "Colombo", "Ricci", "Marino", "D'Amico" };
+    private static final String[] CITIES = { "Roma", "Madrid", "Parigi", "Berlino", "Lisbona", "Vienna" };
+
+    @Param({ "ma", "mario ro", "zzz" })
+    private String query;
+
+    private SearchIndex searchIndex;
+
+    @Setup
+    public void setUp() {
+        EmployeeRepository employeeRepository = Mockito.mock(EmployeeRepository.class);
+        TripRepository tripRepository = Mockito.mock(TripRepository.class);
+        Mockito.when(employeeRepository.findAllSummaries()).thenReturn(List.of());
+        Mockito.when(tripRepository.findAllDescriptions()).thenReturn(List.of());
+        searchIndex = new SearchIndex(employeeRepository, tripRepository);
+        searchIndex.rebuild();
+
+        Random random = new Random(42);
+        for (long id = 1; id <= 100_000; id++) {
+            String firstName = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+            String lastName = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+            String username = (firstName + "." + lastName + "." + id).toLowerCase();
+            searchIndex.indexEmployee(id, username, firstName, lastName, username + "@example.com");
+        }
+        for (long id = 1; id <= 10_000; id++) {
+            Trip trip = new Trip();
+            trip.setId(id);
+            trip.setDescription("Viaggio con destinazione " + CITIES[random.nextInt(CITIES.length)] + " " + id);
+            searchIndex.indexAfterCommit(trip);
+        }
+    }
+
+    @Benchmark
+    public List<SearchResultDTO> search() {
+        return searchIndex.search(query, null, SearchIndex.DEFAULT_LIMIT);
+    }
+
+    @Benchmark
+    public List<SearchResultDTO> searchEmployees() {
+        return searchIndex.search(query, SearchResultDTO.Type.EMPLOYEE, SearchIndex.DEFAULT_LIMIT);
+    }
+}
@@ -1,7 +1,9 @@
 package u5w2d5.etm.auth;
 
+import java.io.IOException;
 import java.util.Set;
 
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -10,6 +12,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import org.springframework.web.bind.annotation.RequestBody;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import u5w2d5.etm.auth.model.*;
 import u5w2d5.etm.auth.request.*;
@@ -23,6 +26,7 @@ import u5w2d5.etm.response.IdResponse;
 public class AuthController {
 
     private final AppUserService appUserService;
+    private final AppUserBulkRegistrationService appUserBulkRegistrationService;
 
     @GetMapping("/me")
     @PreAuthorize("hasRole('USER')")
@@ -44,6 +48,15 @@ public class AuthController {
         return new IdResponse(appUser.getId());
     }
 
+    // Il corpo (array JSON o CSV con intestazione) viene letto in streaming dal
+    // service: per questo non uso @RequestBody
+    @PostMapping(path = "/register/bulk", consumes = { MediaType.APPLICATION_JSON_VALUE, "text/csv" })
+    @PreAuthorize("hasRole('ADMIN')")
+    public BulkRegistrationResponse registerBulk(HttpServletRequest request) throws IOException {
+        return appUserBulkRegistrationService.register(request.getInputStream(),
+                MediaType.parseMediaType(request.getContentType()));
+    }
+
     @PostMapping("/login")
     public ResponseEntity<AppUserAuthResponse> login(@RequestBody AppUserLoginRequest loginRequest) {
         String token = appUserService.authenticateUser(
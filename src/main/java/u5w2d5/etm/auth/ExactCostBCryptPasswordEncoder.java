@@ -0,0 +1,39 @@
+package u5w2d5.etm.auth;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * {@link BCryptPasswordEncoder} che chiede il rehash quando il costo salvato
+ * nell'hash è diverso da quello configurato, non solo quando è inferiore.
+ *
+ * BCryptPasswordEncoder.upgradeEncoding rigenera solo gli hash più deboli:
+ * abbassando etm.security.bcrypt.strength gli hash esistenti resterebbero al
+ * costo precedente e ogni login continuerebbe a pagarlo.
+ */
+public class ExactCostBCryptPasswordEncoder extends BCryptPasswordEncoder {
+
+    private static final Pattern BCRYPT = Pattern.compile("\\A\\$2[aby]?\\$(\\d\\d)\\$[./0-9A-Za-z]{53}");
+
+    private final int strength;
+
+    public ExactCostBCryptPasswordEncoder(int strength) {
+        super(strength);
+        this.strength = strength;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null || encodedPassword.isEmpty()) {
+            return false;
+        }
+        Matcher matcher = BCRYPT.matcher(encodedPassword);
+        if (!matcher.matches()) {
+            // Stesso errore di BCryptPasswordEncoder per gli hash non BCrypt
+            return super.upgradeEncoding(encodedPassword);
+        }
+        return Integer.parseInt(matcher.group(1)) != strength;
+    }
+}
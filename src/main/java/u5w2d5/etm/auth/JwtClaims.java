@@ -0,0 +1,27 @@
+package u5w2d5.etm.auth;
+
+import java.time.Instant;
+import java.util.List;
+
+import lombok.Value;
+
+/**
+ * Immutable view of a verified JWT.
+ *
+ * Returned by {@link JwtTokenUtil#verifyToken(String)}: the signature and the
+ * expiration have already been checked, so callers can read the fields
+ * without parsing the token again.
+ */
+@Value
+public class JwtClaims {
+
+    String username;
+    List<String> roles;
+    Instant issuedAt;
+    Instant expiresAt;
+    Long tokenVersion; // Claim "ver", null for tokens issued without it.
+
+    public boolean isExpired() {
+        return expiresAt.isBefore(Instant.now());
+    }
+}
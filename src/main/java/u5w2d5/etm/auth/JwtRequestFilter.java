@@ -1,21 +1,30 @@
 package u5w2d5.etm.auth;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
 import io.jsonwebtoken.security.SecurityException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import u5w2d5.etm.auth.service.TokenVersionRegistry;
+import u5w2d5.etm.metrics.EndpointTags;
 
 /**
  * Filtro JWT per intercettare e validare i token nelle richieste HTTP.
@@ -60,6 +69,8 @@ public class JwtRequestFilter extends OncePerRequestFilter {
 
     private final UserDetailsService userDetailsService;
     private final JwtTokenUtil jwtTokenUtil;
+    private final TokenVersionRegistry tokenVersionRegistry;
+    private final MeterRegistry meterRegistry;
 
     /**
      * Intercetta le richieste HTTP per estrarre e validare il token JWT.
@@ -92,16 +103,25 @@ public class JwtRequestFilter extends OncePerRequestFilter {
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
             throws ServletException, IOException {
+        final long start = System.nanoTime();
         final String requestTokenHeader = request.getHeader("Authorization");
 
         String username = null;
         String jwtToken = null;
+        JwtClaims claims = null;
+        long parseNanos = 0;
+        long userLoadNanos = 0;
+        String outcome = "anonymous";
 
         // Controlla che l'header Authorization sia presente e nel formato corretto
         if (requestTokenHeader != null && requestTokenHeader.startsWith("Bearer ")) {
             jwtToken = requestTokenHeader.substring(7); // Rimuove il prefisso "Bearer "
             try {
-                username = jwtTokenUtil.getUsernameFromToken(jwtToken);
+                // Il token viene verificato una sola volta: i claims servono sia per lo
+                // username sia per la validazione successiva
+                claims = jwtTokenUtil.verifyToken(jwtToken);
+                username = claims.getUsername();
+                parseNanos = System.nanoTime() - start;
             } catch (IllegalArgumentException e) {
                 log.error("Errore durante l'estrazione del token JWT", e);
                 throw new ServletException("Unable to get JWT Token", e);
@@ -111,21 +131,62 @@ public class JwtRequestFilter extends OncePerRequestFilter {
             } catch (SecurityException e) {
                 log.error("Errore di sicurezza nella validazione del JWT", e);
                 throw new ServletException("JWT Token security validation failed", e);
+            } catch (JwtException e) {
+                // Token firmato ma non accettabile (ad esempio senza scadenza): la
+                // richiesta prosegue come anonima e riceve 401 dove serve autenticazione
+                log.warn("Token JWT rifiutato: {}", e.getMessage());
+            } finally {
+                if (claims == null) {
+                    long elapsed = System.nanoTime() - start;
+                    recordTimings(request, "invalid_token", elapsed, 0, elapsed);
+                }
+            }
+            if (claims == null) {
+                chain.doFilter(request, response);
+                return;
             }
         } else {
             log.warn("JWT Token non presente o non inizia con 'Bearer '");
-            chain.doFilter(request, response);
+            long elapsed = System.nanoTime() - start;
+            try {
+                chain.doFilter(request, response);
+            } finally {
+                recordTimings(request, outcome, 0, 0, elapsed);
+            }
             return;
         }
 
         // Se il token è valido e l'utente non è già autenticato, procedi con
         // l'autenticazione
         if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
+            UserDetails userDetails;
+            if (jwtTokenUtil.isStateless()) {
+                // Modalità stateless: il principal viene costruito dai claims firmati,
+                // senza accedere al database. La revoca passa dalla versione del token.
+                if (!tokenVersionRegistry.isCurrent(claims)) {
+                    log.warn("Token JWT revocato per utente: {}", username);
+                    long elapsed = System.nanoTime() - start;
+                    try {
+                        chain.doFilter(request, response);
+                    } finally {
+                        recordTimings(request, "revoked", parseNanos, 0, elapsed);
+                    }
+                    return;
+                }
+                long userLoadStart = System.nanoTime();
+                userDetails = new User(username, "", claims.getRoles().stream()
+                        .map(SimpleGrantedAuthority::new)
+                        .toList());
+                userLoadNanos = System.nanoTime() - userLoadStart;
+            } else {
+                long userLoadStart = System.nanoTime();
+                userDetails = this.userDetailsService.loadUserByUsername(username);
+                userLoadNanos = System.nanoTime() - userLoadStart;
+            }
 
             // Verifica se il token JWT è valido rispetto ai dettagli dell'utente recuperato
             // dal database o da un sistema di autenticazione esterno.
-            if (jwtTokenUtil.validateToken(jwtToken, userDetails)) {
+            if (jwtTokenUtil.validateClaims(claims, userDetails)) {
 
                 // Crea un oggetto UsernamePasswordAuthenticationToken, che rappresenta
                 // un'istanza di autenticazione per Spring Security.
@@ -149,6 +210,7 @@ public class JwtRequestFilter extends OncePerRequestFilter {
                 // - Senza questa assegnazione, la richiesta verrebbe trattata come anonima
                 // anche se il token JWT è valido.
                 SecurityContextHolder.getContext().setAuthentication(authenticationToken);
+                outcome = "authenticated";
 
                 // Logga l'evento di autenticazione riuscita con il nome utente.
                 // Questo aiuta nel debugging e nel monitoraggio della sicurezza.
@@ -160,6 +222,7 @@ public class JwtRequestFilter extends OncePerRequestFilter {
                 // Questo può essere utile per rilevare tentativi di accesso con token scaduti o
                 // manipolati.
                 log.warn("Token JWT non valido per utente: {}", username);
+                outcome = "rejected";
             }
 
         }
@@ -213,7 +276,36 @@ public class JwtRequestFilter extends OncePerRequestFilter {
         // richiesta in caso di errore (ad esempio, restituendo
         // `response.sendError(HttpServletResponse.SC_UNAUTHORIZED)`).
 
-        chain.doFilter(request, response);
+        long totalNanos = System.nanoTime() - start;
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            recordTimings(request, outcome, parseNanos, userLoadNanos, totalNanos);
+        }
+    }
+
+    /**
+     * Timer etm.jwt.filter per fase (parse, user_load, total). Il tempo della
+     * catena successiva è escluso; i tag vengono calcolati dopo la catena,
+     * quando l'endpoint scelto da Spring MVC è noto.
+     */
+    private void recordTimings(HttpServletRequest request, String outcome, long parseNanos, long userLoadNanos,
+            long totalNanos) {
+        String endpoint = EndpointTags.endpoint(request);
+        if (parseNanos > 0) {
+            timer("parse", endpoint, outcome).record(parseNanos, TimeUnit.NANOSECONDS);
+        }
+        if (userLoadNanos > 0) {
+            timer("user_load", endpoint, outcome).record(userLoadNanos, TimeUnit.NANOSECONDS);
+        }
+        timer("total", endpoint, outcome).record(totalNanos, TimeUnit.NANOSECONDS);
+    }
 
+    private Timer timer(String phase, String endpoint, String outcome) {
+        return Timer.builder("etm.jwt.filter")
+                .tag("phase", phase)
+                .tag(EndpointTags.ENDPOINT, endpoint)
+                .tag(EndpointTags.OUTCOME, outcome)
+                .register(meterRegistry);
     }
 }
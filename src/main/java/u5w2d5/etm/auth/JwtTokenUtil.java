@@ -1,22 +1,38 @@
 package u5w2d5.etm.auth;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import javax.crypto.SecretKey;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.MissingClaimException;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
@@ -34,6 +50,13 @@ import lombok.extern.slf4j.Slf4j;
  * - Extracts claims (such as username and roles) from a token.
  * - Validates whether a token is expired or corresponds to a given user.
  *
+ * **Performance:**
+ * - The signing key and the parser are built once, when the secret is set,
+ * and reused by every call (both are immutable and thread-safe).
+ * - `verifyToken()` parses a token once and keeps the verified claims in a
+ * small cache keyed by the SHA-256 digest of the token; each entry expires
+ * together with the token it belongs to.
+ *
  * **Security Considerations:**
  * - The `secretKey` should be long enough (at least 256 bits) for HMAC-SHA256.
  * - Tokens should have an appropriate expiration time to prevent misuse.
@@ -49,8 +72,114 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class JwtTokenUtil {
 
+    private static final int VERIFIED_TOKENS_CACHE_SIZE = 10_000;
+    private static final String TOKEN_VERSION_CLAIM = "ver";
+
     private String secretKey; // Secret key used for signing the JWT.
     private long expirationTime; // Expiration time in milliseconds.
+    private boolean stateless; // Builds the principal from the token claims, without loading the user.
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private SecretKey signingKey;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private JwtParser jwtParser;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private final Cache<String, JwtClaims> verifiedTokens = Caffeine.newBuilder()
+            .maximumSize(VERIFIED_TOKENS_CACHE_SIZE)
+            .expireAfter(new Expiry<String, JwtClaims>() {
+                @Override
+                public long expireAfterCreate(String key, JwtClaims claims, long currentTime) {
+                    return Math.max(0, Duration.between(Instant.now(), claims.getExpiresAt()).toNanos());
+                }
+
+                @Override
+                public long expireAfterUpdate(String key, JwtClaims claims, long currentTime,
+                        long currentDuration) {
+                    return currentDuration;
+                }
+
+                @Override
+                public long expireAfterRead(String key, JwtClaims claims, long currentTime,
+                        long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
+
+    /**
+     * Sets the secret and derives the signing key and the parser from it.
+     *
+     * @param secretKey The HMAC secret.
+     *
+     *                  **Why here and not on every call?**
+     *                  - `Keys.hmacShaKeyFor()` and `Jwts.parserBuilder()` are
+     *                  relatively expensive and their results never change for
+     *                  a given secret.
+     */
+    public void setSecretKey(String secretKey) {
+        this.secretKey = secretKey;
+        this.signingKey = Keys.hmacShaKeyFor(secretKey.getBytes(StandardCharsets.UTF_8));
+        this.jwtParser = Jwts.parserBuilder()
+                .setSigningKey(signingKey) // Ensures the key is properly handled.
+                .build();
+        this.verifiedTokens.invalidateAll();
+    }
+
+    /**
+     * Verifies a JWT token and returns its claims.
+     *
+     * @param token The JWT token.
+     * @return The verified, immutable claims of the token.
+     * @throws io.jsonwebtoken.JwtException If the token is malformed, has an
+     *                                      invalid signature, is expired or has
+     *                                      no expiration.
+     *
+     *                                      **Why a cache?**
+     *                                      - The same token is presented on
+     *                                      every request of a session: checking
+     *                                      the HMAC signature and decoding the
+     *                                      JSON each time is wasted work.
+     *                                      - Keys are digests, so raw tokens are
+     *                                      never kept in memory.
+     */
+    public JwtClaims verifyToken(String token) {
+        String digest = digest(token);
+        JwtClaims cached = verifiedTokens.getIfPresent(digest);
+        if (cached != null && !cached.isExpired()) {
+            return cached;
+        }
+
+        Claims claims = getAllClaimsFromToken(token);
+        // Without "exp" the token would never expire, neither here nor in the cache
+        if (claims.getExpiration() == null) {
+            throw new MissingClaimException(null, claims, "JWT has no expiration (exp) claim");
+        }
+        @SuppressWarnings("unchecked")
+        List<String> roles = claims.get("roles", List.class);
+        Number tokenVersion = claims.get(TOKEN_VERSION_CLAIM, Number.class);
+        JwtClaims verified = new JwtClaims(
+                claims.getSubject(),
+                roles == null ? List.of() : List.copyOf(roles),
+                claims.getIssuedAt() == null ? null : claims.getIssuedAt().toInstant(),
+                claims.getExpiration().toInstant(),
+                tokenVersion == null ? null : tokenVersion.longValue());
+        verifiedTokens.put(digest, verified);
+        return verified;
+    }
+
+    private static String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(sha256.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
 
     /**
      * Extracts the username (subject) from the given JWT token.
@@ -64,7 +193,7 @@ public class JwtTokenUtil {
      *         - Using a generic method (`getClaimFromToken()`) ensures reusability.
      */
     public String getUsernameFromToken(String token) {
-        return getClaimFromToken(token, Claims::getSubject);
+        return verifyToken(token).getUsername();
     }
 
     /**
@@ -78,7 +207,7 @@ public class JwtTokenUtil {
      *         protected resources.
      */
     public Date getExpirationDateFromToken(String token) {
-        return getClaimFromToken(token, Claims::getExpiration);
+        return Date.from(verifyToken(token).getExpiresAt());
     }
 
     /**
@@ -110,26 +239,7 @@ public class JwtTokenUtil {
      *         enhanced key handling.
      */
     private Claims getAllClaimsFromToken(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(Keys.hmacShaKeyFor(secretKey.getBytes())) // Ensures the key is properly handled.
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-    }
-
-    /**
-     * Checks whether a JWT token has expired.
-     *
-     * @param token The JWT token.
-     * @return `true` if the token is expired, `false` otherwise.
-     *
-     *         **Why compare against `new Date()`?**
-     *         - This ensures the check is always performed against the current
-     *         server time.
-     */
-    private Boolean isTokenExpired(String token) {
-        final Date expiration = getExpirationDateFromToken(token);
-        return expiration.before(new Date());
+        return jwtParser.parseClaimsJws(token).getBody();
     }
 
     /**
@@ -152,6 +262,21 @@ public class JwtTokenUtil {
      *         frequently.
      */
     public String generateToken(UserDetails userDetails) {
+        return generateToken(userDetails, null);
+    }
+
+    /**
+     * Generates a JWT token that also carries the user's token version.
+     *
+     * @param userDetails  The user information.
+     * @param tokenVersion The current token version of the user.
+     * @return A signed JWT token.
+     *
+     *         **Why a version claim?**
+     *         - In stateless mode the roles are trusted from the token: the
+     *         version lets a password or role change revoke older tokens.
+     */
+    public String generateToken(UserDetails userDetails, Long tokenVersion) {
         Collection<? extends GrantedAuthority> authorities = userDetails.getAuthorities();
         List<String> roles = authorities.stream()
                 .map(GrantedAuthority::getAuthority)
@@ -165,9 +290,10 @@ public class JwtTokenUtil {
         return Jwts.builder()
                 .setSubject(userDetails.getUsername()) // Sets the username as the token subject.
                 .claim("roles", roles) // Adds roles to the token.
+                .claim(TOKEN_VERSION_CLAIM, tokenVersion) // Null values are not written.
                 .setIssuedAt(new Date(System.currentTimeMillis())) // Token issue time.
                 .setExpiration(new Date(System.currentTimeMillis() + expirationTime)) // Expiration time.
-                .signWith(Keys.hmacShaKeyFor(secretKey.getBytes()), SignatureAlgorithm.HS256) // Signs the token.
+                .signWith(signingKey, SignatureAlgorithm.HS256) // Signs the token.
                 .compact();
     }
 
@@ -181,8 +307,7 @@ public class JwtTokenUtil {
      *         - Roles are unique by nature, and using a Set prevents duplicates.
      */
     public Set<String> getRolesFromToken(String token) {
-        Claims claims = getAllClaimsFromToken(token);
-        return claims.get("roles", Set.class);
+        return new HashSet<>(verifyToken(token).getRoles());
     }
 
     /**
@@ -204,7 +329,19 @@ public class JwtTokenUtil {
      *         - Ensuring the username matches prevents token spoofing.
      */
     public Boolean validateToken(String token, UserDetails userDetails) {
-        final String username = getUsernameFromToken(token);
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+        final JwtClaims claims = verifyToken(token);
+        return validateClaims(claims, userDetails);
+    }
+
+    /**
+     * Validates already verified claims against a given user's details, without
+     * touching the token again.
+     *
+     * @param claims      The claims returned by `verifyToken()`.
+     * @param userDetails The user details to validate against.
+     * @return `true` if the claims belong to the user and are not expired.
+     */
+    public boolean validateClaims(JwtClaims claims, UserDetails userDetails) {
+        return claims.getUsername().equals(userDetails.getUsername()) && !claims.isExpired();
     }
 }
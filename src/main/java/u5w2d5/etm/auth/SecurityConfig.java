@@ -1,6 +1,7 @@
 package u5w2d5.etm.auth;
 
 import java.util.List;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -15,6 +16,7 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 
 /**
@@ -68,6 +70,7 @@ public class SecurityConfig {
                 "/swagger-ui/**", // Documentazione Swagger
                 "/v3/api-docs/**", // API documentation OpenAPI
                 "/error",
+                "/actuator/health", // Health check per il load balancer
                 "/sw.js"); // Service worker per caching
     }
 
@@ -103,11 +106,19 @@ public class SecurityConfig {
 
                 /**
                  * Configura le autorizzazioni per gli endpoint.
+                 * - La registrazione (singola e massiva) è riservata agli
+                 * amministratori: la regola precede quella pubblica su /api/auth/**,
+                 * dato che vale la prima che corrisponde e che @PreAuthorize da solo
+                 * non basta senza la method security.
                  * - Gli URL definiti in `publicUrls()` sono accessibili a tutti.
+                 * - Gli altri endpoint Actuator (metriche, Prometheus) sono
+                 * riservati agli amministratori.
                  * - Tutti gli altri endpoint richiedono autenticazione.
                  */
                 .authorizeHttpRequests(auth -> {
+                    auth.requestMatchers("/api/auth/register/**").hasRole("ADMIN");
                     publicUrls().forEach(url -> auth.requestMatchers(url).permitAll());
+                    auth.requestMatchers("/actuator/**").hasRole("ADMIN");
                     auth.anyRequest().authenticated();
                 })
 
@@ -165,7 +176,13 @@ public class SecurityConfig {
     /**
      * Configura il password encoder per l'applicazione.
      *
-     * @return Un'istanza di {@link BCryptPasswordEncoder}.
+     * @return Un {@link BCryptPasswordEncoder} eseguito su un pool dedicato e
+     *         limitato ({@link BoundedPasswordEncoder}).
+     *
+     *         Il costo BCrypt è configurabile: gli hash con un costo diverso da
+     *         quello configurato (più basso o più alto) vengono ricalcolati al
+     *         primo login riuscito (vedi `ExactCostBCryptPasswordEncoder` e
+     *         `CustomUserDetailsService.updatePassword`).
      *
      *         Alternativa:
      *         - `NoOpPasswordEncoder` potrebbe essere usato per ambienti di test,
@@ -174,8 +191,14 @@ public class SecurityConfig {
      *         resistenza a brute force.
      */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(
+            @Value("${etm.security.bcrypt.strength:10}") int strength,
+            @Value("${etm.security.bcrypt.threads:0}") int threads,
+            @Value("${etm.security.bcrypt.queue-capacity:100}") int queueCapacity,
+            MeterRegistry meterRegistry) {
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        return new BoundedPasswordEncoder(new ExactCostBCryptPasswordEncoder(strength), poolSize, queueCapacity,
+                meterRegistry);
     }
 
     /**
@@ -0,0 +1,20 @@
+package u5w2d5.etm.auth.mapper;
+
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.MappingConstants;
+
+import u5w2d5.etm.auth.model.AppUser;
+import u5w2d5.etm.auth.response.AppUserDetailsResponse;
+
+/**
+ * Conversione da AppUser al DTO con i dettagli dell'utente, generata da
+ * MapStruct in fase di compilazione.
+ */
+@Mapper(componentModel = MappingConstants.ComponentModel.SPRING)
+public interface AppUserMapper {
+
+    // I ruoli vengono esposti con il loro nome (es. ROLE_ADMIN)
+    @Mapping(target = "role", source = "roles")
+    AppUserDetailsResponse toDetailsResponse(AppUser appUser);
+}
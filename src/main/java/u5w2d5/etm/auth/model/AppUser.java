@@ -5,6 +5,9 @@ import java.util.Collection;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 import org.springframework.security.core.GrantedAuthority;
@@ -42,7 +45,8 @@ public class AppUser extends Employee implements UserDetails {
     // @Column(nullable = false)
     // private Long id;
 
-    @Column(nullable = false)
+    // Tabella singola: le righe dei semplici Employee non hanno credenziali,
+    // quindi le colonne di AppUser devono ammettere null nel database
     private String password;
 
     @CreationTimestamp
@@ -53,11 +57,20 @@ public class AppUser extends Employee implements UserDetails {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
-    @Column(name = "password_updated_at", nullable = false)
+    @Column(name = "password_updated_at")
     private LocalDateTime passwordUpdatedAt;
 
+    // Incrementata ad ogni cambio di password o ruoli: i token emessi con una
+    // versione precedente non sono più accettati in modalità stateless.
+    // Il default a 0 copre le righe dei semplici Employee e quelle già presenti
+    // quando la colonna viene aggiunta con ddl-auto=update
+    @ColumnDefault("0")
+    @Column(name = "token_version", nullable = false)
+    private long tokenVersion = 0;
+
     @ElementCollection(fetch = FetchType.EAGER)
     @Enumerated(EnumType.STRING)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "appUserRoles")
     private Set<AppUserRole> roles;
 
     private boolean accountNonExpired = true;
@@ -72,6 +85,16 @@ public class AppUser extends Employee implements UserDetails {
         this.passwordUpdatedAt = LocalDateTime.now();
     }
 
+    // Sostituisce l'hash con uno ricalcolato al costo attuale: la password non
+    // cambia, quindi passwordUpdatedAt e i token restano quelli di prima
+    public void rehashPassword(String password) {
+        this.password = password;
+    }
+
+    public void revokeTokens() {
+        this.tokenVersion++;
+    }
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return roles.stream()
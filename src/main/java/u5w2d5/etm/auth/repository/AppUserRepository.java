@@ -1,10 +1,16 @@
 package u5w2d5.etm.auth.repository;
 
 import u5w2d5.etm.auth.model.*;
+import u5w2d5.etm.auth.repository.projection.UserIdentity;
+import u5w2d5.etm.auth.repository.projection.UserTokenVersion;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
@@ -22,4 +28,17 @@ public interface AppUserRepository extends JpaRepository<AppUser, Integer> {
 
     Optional<AppUser> findByUsernameOrEmail(String username, String email);
 
+    // Username ed email sono unici su tutta la tabella employees, non solo tra
+    // gli AppUser: il controllo va fatto su Employee
+    @Query("select e.username as username, e.email as email from Employee e "
+            + "where e.username in :usernames or e.email in :emails")
+    List<UserIdentity> findExistingIdentities(@Param("usernames") Collection<String> usernames,
+            @Param("emails") Collection<String> emails);
+
+    @Query("select u.username as username, u.tokenVersion as tokenVersion from AppUser u")
+    List<UserTokenVersion> findAllTokenVersions();
+
+    @Query("select u.tokenVersion from AppUser u where u.username = :username")
+    Optional<Long> findTokenVersionByUsername(@Param("username") String username);
+
 }
\ No newline at end of file
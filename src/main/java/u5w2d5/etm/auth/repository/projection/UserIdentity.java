@@ -0,0 +1,8 @@
+package u5w2d5.etm.auth.repository.projection;
+
+public interface UserIdentity {
+
+    String getUsername();
+
+    String getEmail();
+}
@@ -0,0 +1,8 @@
+package u5w2d5.etm.auth.repository.projection;
+
+public interface UserTokenVersion {
+
+    String getUsername();
+
+    long getTokenVersion();
+}
@@ -0,0 +1,17 @@
+package u5w2d5.etm.auth.response;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class BulkRegistrationResponse {
+    private int total;
+    private int created;
+    private int rejected;
+
+    // Una voce per ogni riga ricevuta, nello stesso ordine
+    private List<BulkRegistrationRowResult> rows;
+}
@@ -0,0 +1,27 @@
+package u5w2d5.etm.auth.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class BulkRegistrationRowResult {
+
+    public enum Status {
+        CREATED,
+        // Dati mancanti o non validi (message contiene il dettaglio)
+        INVALID,
+        // Username o email ripetuti in una riga precedente della stessa richiesta
+        DUPLICATE,
+        // Username o email già registrati
+        ALREADY_EXISTS
+    }
+
+    // Numero della riga, a partire da 1 (esclusa l'intestazione CSV)
+    private int row;
+    private String username;
+    private String email;
+    private Status status;
+    private Long id;
+    private String message;
+}
@@ -0,0 +1,304 @@
+package u5w2d5.etm.auth.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.collection.AbstractCollectionPersister;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import u5w2d5.etm.auth.BoundedPasswordEncoder;
+import u5w2d5.etm.auth.model.AppUser;
+import u5w2d5.etm.auth.model.AppUserRole;
+import u5w2d5.etm.auth.repository.AppUserRepository;
+import u5w2d5.etm.auth.repository.projection.UserIdentity;
+import u5w2d5.etm.auth.request.AppUserRegistrationRequest;
+import u5w2d5.etm.auth.response.BulkRegistrationResponse;
+import u5w2d5.etm.auth.response.BulkRegistrationRowResult;
+import u5w2d5.etm.auth.response.BulkRegistrationRowResult.Status;
+import u5w2d5.etm.exception.ConflictException;
+import u5w2d5.etm.service.SearchIndex;
+
+/**
+ * Registrazione massiva di utenti (POST /api/auth/register/bulk).
+ *
+ * Rispetto a {@link AppUserService#registerUser} che, per ogni utente, fa un
+ * controllo di esistenza, un hash BCrypt e un insert:
+ * - le righe vengono lette dallo stream e lavorate a blocchi di
+ * etm.security.bulk-registration.batch-size;
+ * - per ogni blocco una sola query cerca gli username e le email già usati;
+ * - gli hash vengono calcolati in parallelo sul pool BCrypt
+ * ({@link BoundedPasswordEncoder#encodeAll});
+ * - utenti e ruoli vengono inseriti con batch JDBC, in una transazione per
+ * blocco.
+ *
+ * Ogni riga riceve un esito nel report. I blocchi già inseriti restano anche se
+ * un blocco successivo fallisce: ripetendo la richiesta quegli utenti risultano
+ * ALREADY_EXISTS.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AppUserBulkRegistrationService implements InitializingBean {
+
+    private final AppUserRepository appUserRepository;
+    private final PasswordEncoder passwordEncoder;
+    private final TokenVersionRegistry tokenVersionRegistry;
+    private final SearchIndex searchIndex;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    @Value("${etm.security.bulk-registration.batch-size:500}")
+    private int batchSize;
+
+    private String insertUserSql;
+    private String insertRoleSql;
+    private String selectIdsSql;
+
+    // Discriminatore di AppUser e tabella dei ruoli li decide Hibernate: li leggo
+    // dal metamodello invece di ripeterli qui
+    @Override
+    public void afterPropertiesSet() {
+        var metamodel = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getMappingMetamodel();
+        AbstractEntityPersister user = (AbstractEntityPersister) metamodel.getEntityDescriptor(AppUser.class);
+        AbstractCollectionPersister roles = (AbstractCollectionPersister) metamodel
+                .getCollectionDescriptor(AppUser.class.getName() + ".roles");
+
+        insertUserSql = "insert into " + user.getTableName() + " (" + user.getDiscriminatorColumnName()
+                + ", username, first_name, last_name, email, password, created_at, updated_at,"
+                + " password_updated_at, version, token_version, account_non_expired, account_non_locked,"
+                + " credentials_non_expired, enabled)"
+                + " values ('" + user.getDiscriminatorValue() + "', ?, ?, ?, ?, ?, ?, ?, ?, 0, 0,"
+                + " true, true, true, true)";
+        insertRoleSql = "insert into " + roles.getTableName() + " (" + roles.getKeyColumnNames()[0] + ", "
+                + roles.getElementColumnNames()[0] + ")"
+                + " values ((select id from " + user.getTableName() + " where username = ?), ?)";
+        selectIdsSql = "select id, username from " + user.getTableName() + " where username in (:usernames)";
+    }
+
+    public BulkRegistrationResponse register(InputStream body, MediaType contentType) throws IOException {
+        List<BulkRegistrationRowResult> results = new ArrayList<>();
+        Set<String> usernames = new HashSet<>();
+        Set<String> emails = new HashSet<>();
+        List<PendingUser> batch = new ArrayList<>(batchSize);
+
+        try (RegistrationRequestReader reader = RegistrationRequestReader.open(body, contentType, objectMapper)) {
+            RegistrationRequestReader.Row row;
+            while ((row = reader.next()) != null) {
+                PendingUser user = prepare(row, results, usernames, emails);
+                if (user != null) {
+                    batch.add(user);
+                }
+                if (batch.size() == batchSize) {
+                    insertBatch(batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                insertBatch(batch);
+            }
+        }
+
+        int created = (int) results.stream().filter(result -> result.getStatus() == Status.CREATED).count();
+        log.info("Registrazione massiva: {} righe, {} utenti creati", results.size(), created);
+        return new BulkRegistrationResponse(results.size(), created, results.size() - created, results);
+    }
+
+    // Stesse regole di AppUserService.registerUser e dei setter di Employee
+    private PendingUser prepare(RegistrationRequestReader.Row row, List<BulkRegistrationRowResult> results,
+            Set<String> usernames, Set<String> emails) {
+        AppUserRegistrationRequest request = row.request();
+        BulkRegistrationRowResult result = new BulkRegistrationRowResult(row.number(),
+                request == null ? null : request.getUsername(),
+                request == null ? null : request.getEmail(),
+                null, null, null);
+        results.add(result);
+
+        if (row.error() != null) {
+            return reject(result, Status.INVALID, row.error());
+        }
+        // Un elemento null nell'array JSON: solo questa riga è invalida
+        if (request == null) {
+            return reject(result, Status.INVALID, "Row is empty");
+        }
+        Set<ConstraintViolation<AppUserRegistrationRequest>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            return reject(result, Status.INVALID, violations.stream()
+                    .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+        }
+
+        String email = request.getEmail().toLowerCase();
+        String username = request.getUsername();
+        if (username == null || username.isEmpty()) {
+            if (email.indexOf('@') < 1) {
+                return reject(result, Status.INVALID, "email must contain @ when username is missing");
+            }
+            username = email.substring(0, email.indexOf('@'));
+        }
+        username = username.toLowerCase().replace(" ", "").replace("'", "");
+        result.setUsername(username);
+        result.setEmail(email);
+
+        AppUserRole role;
+        try {
+            role = request.getRole() == null ? AppUserRole.ROLE_USER
+                    : AppUserRole.valueOf("ROLE_" + request.getRole().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return reject(result, Status.INVALID, "Unknown role: " + request.getRole());
+        }
+
+        if (usernames.contains(username) || emails.contains(email)) {
+            return reject(result, Status.DUPLICATE, "Username or email repeated in this request");
+        }
+        usernames.add(username);
+        emails.add(email);
+
+        String password = request.getPassword() == null || request.getPassword().isEmpty()
+                ? AppUserService.generateRandomPassword(20)
+                : request.getPassword();
+        return new PendingUser(result, request.getFirstName(), request.getLastName(), username, email, password,
+                role);
+    }
+
+    private static PendingUser reject(BulkRegistrationRowResult result, Status status, String message) {
+        result.setStatus(status);
+        result.setMessage(message);
+        return null;
+    }
+
+    private void insertBatch(List<PendingUser> batch) {
+        List<PendingUser> pending = withoutExisting(batch);
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        List<String> hashes = passwordEncoder instanceof BoundedPasswordEncoder bounded
+                ? bounded.encodeAll(pending.stream().map(PendingUser::getPassword).toList())
+                : pending.stream().map(user -> passwordEncoder.encode(user.getPassword())).toList();
+        for (int i = 0; i < pending.size(); i++) {
+            pending.get(i).setHash(hashes.get(i));
+        }
+
+        try {
+            insert(pending);
+        } catch (DuplicateKeyException e) {
+            // Un'altra registrazione ha usato uno username nel frattempo: rifaccio il
+            // controllo e riprovo una volta con le righe rimaste
+            pending = withoutExisting(pending);
+            if (pending.isEmpty()) {
+                return;
+            }
+            try {
+                insert(pending);
+            } catch (DuplicateKeyException retryException) {
+                throw new ConflictException("Concurrent registration of the same users, retry the request");
+            }
+        }
+
+        Map<String, Long> ids = new HashMap<>();
+        namedParameterJdbcTemplate.query(selectIdsSql,
+                Map.of("usernames", pending.stream().map(PendingUser::getUsername).toList()),
+                (RowCallbackHandler) rs -> ids.put(rs.getString("username"), rs.getLong("id")));
+        for (PendingUser user : pending) {
+            user.getResult().setStatus(Status.CREATED);
+            user.getResult().setId(ids.get(user.getUsername()));
+            tokenVersionRegistry.update(user.getUsername(), 0);
+            searchIndex.indexEmployee(user.getResult().getId(), user.getUsername(), user.getFirstName(),
+                    user.getLastName(), user.getEmail());
+        }
+    }
+
+    // Una sola query per tutto il blocco
+    private List<PendingUser> withoutExisting(List<PendingUser> batch) {
+        List<UserIdentity> existing = appUserRepository.findExistingIdentities(
+                batch.stream().map(PendingUser::getUsername).toList(),
+                batch.stream().map(PendingUser::getEmail).toList());
+        if (existing.isEmpty()) {
+            return batch;
+        }
+        Set<String> usedUsernames = existing.stream().map(UserIdentity::getUsername).collect(Collectors.toSet());
+        Set<String> usedEmails = existing.stream().map(UserIdentity::getEmail).collect(Collectors.toSet());
+
+        List<PendingUser> remaining = new ArrayList<>(batch.size());
+        for (PendingUser user : batch) {
+            if (usedUsernames.contains(user.getUsername()) || usedEmails.contains(user.getEmail())) {
+                reject(user.getResult(), Status.ALREADY_EXISTS, "Username or email already exists");
+            } else {
+                remaining.add(user);
+            }
+        }
+        return remaining;
+    }
+
+    private void insert(List<PendingUser> users) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(insertUserSql, users, users.size(), (statement, user) -> {
+                statement.setString(1, user.getUsername());
+                statement.setString(2, user.getFirstName());
+                statement.setString(3, user.getLastName());
+                statement.setString(4, user.getEmail());
+                statement.setString(5, user.getHash());
+                statement.setTimestamp(6, now);
+                statement.setTimestamp(7, now);
+                statement.setTimestamp(8, now);
+            });
+            jdbcTemplate.batchUpdate(insertRoleSql, users, users.size(), (statement, user) -> {
+                statement.setString(1, user.getUsername());
+                statement.setString(2, user.getRole().name());
+            });
+        });
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    private static final class PendingUser {
+
+        private final BulkRegistrationRowResult result;
+        private final String firstName;
+        private final String lastName;
+        private final String username;
+        private final String email;
+        private final String password;
+        private final AppUserRole role;
+
+        // Calcolato dopo il controllo dei duplicati, solo per chi va inserito
+        @Setter
+        private String hash;
+    }
+}
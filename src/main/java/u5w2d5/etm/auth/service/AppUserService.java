@@ -1,10 +1,12 @@
 package u5w2d5.etm.auth.service;
 
 import u5w2d5.etm.auth.JwtTokenUtil;
+import u5w2d5.etm.auth.mapper.AppUserMapper;
 import u5w2d5.etm.auth.model.AppUser;
 import u5w2d5.etm.auth.model.AppUserRole;
 import u5w2d5.etm.auth.repository.AppUserRepository;
 import u5w2d5.etm.auth.response.AppUserDetailsResponse;
+import u5w2d5.etm.service.SearchIndex;
 
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -15,7 +17,6 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
-import org.springframework.beans.BeanUtils;
 import jakarta.persistence.EntityExistsException;
 import jakarta.validation.Valid;
 
@@ -35,8 +36,12 @@ public class AppUserService {
     private final PasswordEncoder passwordEncoder;
     private final AuthenticationManager authenticationManager;
     private final JwtTokenUtil jwtTokenUtil;
+    private final UserDetailsCache userDetailsCache;
+    private final TokenVersionRegistry tokenVersionRegistry;
+    private final AppUserMapper appUserMapper;
+    private final SearchIndex searchIndex;
 
-    private String generateRandomPassword(int length) {
+    static String generateRandomPassword(int length) {
         String chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789@#$%&*";
         StringBuilder password = new StringBuilder(length);
         Random random = new Random();
@@ -68,7 +73,9 @@ public class AppUserService {
         appUser.setPassword(passwordEncoder.encode(password));
         appUser.setEmail(email.toLowerCase());
         appUser.setRoles(roles);
-        return appUserRepository.save(appUser);
+        AppUser saved = appUserRepository.save(appUser);
+        searchIndex.indexAfterCommit(saved);
+        return saved;
     }
 
     // Metodo per la registrazione "veloce di un utente"
@@ -87,7 +94,13 @@ public class AppUserService {
         Authentication authentication = authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(username, password));
         UserDetails userDetails = (UserDetails) authentication.getPrincipal();
-        return jwtTokenUtil.generateToken(userDetails);
+        Long tokenVersion = appUserRepository.findTokenVersionByUsername(userDetails.getUsername()).orElse(null);
+        // Un utente creato dopo l'ultimo refresh non è ancora nel registro: senza
+        // questa riga il suo token verrebbe rifiutato in modalità stateless
+        if (tokenVersion != null) {
+            tokenVersionRegistry.update(userDetails.getUsername(), tokenVersion);
+        }
+        return jwtTokenUtil.generateToken(userDetails, tokenVersion);
     }
 
     public void changePassword(String username, String oldPassword, String newPassword) {
@@ -99,7 +112,10 @@ public class AppUserService {
         }
 
         appUser.setPassword(passwordEncoder.encode(newPassword));
+        appUser.revokeTokens();
         appUserRepository.save(appUser);
+        userDetailsCache.evict(appUser.getUsername(), appUser.getEmail());
+        tokenVersionRegistry.update(appUser.getUsername(), appUser.getTokenVersion());
     }
 
     public void updateUserRoles(String username, Set<AppUserRole> roles) {
@@ -107,15 +123,16 @@ public class AppUserService {
                 .orElseThrow(() -> new UsernameNotFoundException("User not found"));
 
         appUser.setRoles(roles);
+        appUser.revokeTokens();
         appUserRepository.save(appUser);
+        userDetailsCache.evict(appUser.getUsername(), appUser.getEmail());
+        tokenVersionRegistry.update(appUser.getUsername(), appUser.getTokenVersion());
     }
 
     public AppUserDetailsResponse getUser(String username, String email) {
         AppUser appUser = appUserRepository.findByUsernameOrEmail(username, email)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found"));
-        AppUserDetailsResponse appUserDetailsResponse = new AppUserDetailsResponse();
-        BeanUtils.copyProperties(appUser, appUserDetailsResponse);
-        return appUserDetailsResponse;
+        return appUserMapper.toDetailsResponse(appUser);
     }
 
     public AppUserDetailsResponse getCurrentUser() {
@@ -1,25 +1,62 @@
 package u5w2d5.etm.auth.service;
 
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
-import lombok.Data;
 import lombok.RequiredArgsConstructor;
+import u5w2d5.etm.auth.model.AppUser;
 import u5w2d5.etm.auth.repository.*;
 
 @Service
 @RequiredArgsConstructor
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
     private final AppUserRepository appUserRepository;
+    private final UserDetailsCache userDetailsCache;
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        if (!appUserRepository.existsByUsernameOrEmail(username, username)) {
-            throw new UsernameNotFoundException("User not found with username: " + username);
-        }
-        return appUserRepository.findByUsernameOrEmail(username, username).get();
+        // Restituisce sempre una copia: dopo il login Spring Security cancella la
+        // password del principal (CredentialsContainer) e non deve farlo su
+        // quello in cache
+        return User.withUserDetails(userDetailsCache.get(username, this::loadFromDatabase)).build();
+    }
+
+    // In cache finisce una copia immutabile e non l'entità: è condivisa tra i
+    // thread e non deve trascinarsi dietro la sessione JPA
+    private UserDetails loadFromDatabase(String username) {
+        AppUser appUser = appUserRepository.findByUsernameOrEmail(username, username)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found with username: " + username));
+
+        return User.withUsername(appUser.getUsername())
+                .password(appUser.getPassword())
+                .authorities(appUser.getRoles().stream()
+                        .map(role -> new SimpleGrantedAuthority(role.name()))
+                        .toList())
+                .disabled(!appUser.isEnabled())
+                .accountExpired(!appUser.isAccountNonExpired())
+                .accountLocked(!appUser.isAccountNonLocked())
+                .credentialsExpired(!appUser.isCredentialsNonExpired())
+                .build();
+    }
+
+    /**
+     * Chiamato da Spring Security dopo un login riuscito quando l'hash salvato
+     * ha un costo BCrypt diverso da quello configurato: permette di cambiare il
+     * costo senza forzare un reset delle password.
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        AppUser appUser = appUserRepository.findByUsername(user.getUsername())
+                .orElseThrow(() -> new UsernameNotFoundException("User not found with username: " + user.getUsername()));
+        appUser.rehashPassword(newPassword);
+        appUserRepository.save(appUser);
+        userDetailsCache.evict(appUser.getUsername(), appUser.getEmail());
+        return User.withUserDetails(user).password(newPassword).build();
     }
 }
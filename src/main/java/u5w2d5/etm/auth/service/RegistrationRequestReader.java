@@ -0,0 +1,211 @@
+package u5w2d5.etm.auth.service;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.springframework.http.MediaType;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import u5w2d5.etm.auth.request.AppUserRegistrationRequest;
+
+/**
+ * Legge una alla volta le righe di una registrazione massiva direttamente dallo
+ * stream della richiesta, senza caricare in memoria l'intero corpo.
+ *
+ * Formati accettati:
+ * - JSON: un array di {@link AppUserRegistrationRequest}
+ * - CSV ({@value #TEXT_CSV_VALUE}): intestazione con i nomi dei campi
+ * (firstName, lastName, email obbligatori; username, password, role
+ * facoltativi) e una riga per utente. I campi vuoti valgono null.
+ */
+interface RegistrationRequestReader extends Closeable {
+
+    String TEXT_CSV_VALUE = "text/csv";
+
+    /**
+     * @param number numero della riga, a partire da 1
+     * @param error  se la riga non è leggibile, il motivo (request è null).
+     *               Un elemento JSON null ha request ed error null
+     */
+    record Row(int number, AppUserRegistrationRequest request, String error) {
+    }
+
+    /**
+     * @return la riga successiva, o null a fine stream
+     */
+    Row next() throws IOException;
+
+    static RegistrationRequestReader open(InputStream body, MediaType contentType, ObjectMapper objectMapper)
+            throws IOException {
+        if (contentType.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+            return new Json(body, objectMapper);
+        }
+        if (contentType.isCompatibleWith(MediaType.parseMediaType(TEXT_CSV_VALUE))) {
+            Charset charset = contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.UTF_8;
+            return new Csv(new BufferedReader(new InputStreamReader(body, charset)));
+        }
+        throw new IllegalArgumentException("Unsupported content type: " + contentType);
+    }
+
+    class Json implements RegistrationRequestReader {
+
+        private final ObjectMapper objectMapper;
+        private final MappingIterator<JsonNode> iterator;
+        private int number = 0;
+
+        Json(InputStream body, ObjectMapper objectMapper) throws IOException {
+            this.objectMapper = objectMapper;
+            // Con un array alla radice readValues restituisce un elemento alla volta.
+            // Ogni elemento passa da un albero: Jackson non converte null in un record
+            // e un elemento non convertibile non deve interrompere lo stream
+            this.iterator = objectMapper.readerFor(JsonNode.class).readValues(body);
+        }
+
+        @Override
+        public Row next() throws IOException {
+            JsonNode element;
+            try {
+                if (!iterator.hasNextValue()) {
+                    return null;
+                }
+                number++;
+                element = iterator.nextValue();
+            } catch (JsonProcessingException e) {
+                // Dopo un errore di sintassi il parser non può riprendere: le righe
+                // precedenti restano registrate
+                throw new IllegalArgumentException("Malformed JSON at row " + number + ": " + e.getOriginalMessage());
+            }
+            if (element == null || element.isNull()) {
+                return new Row(number, null, null);
+            }
+            try {
+                return new Row(number, objectMapper.treeToValue(element, AppUserRegistrationRequest.class), null);
+            } catch (JsonProcessingException e) {
+                return new Row(number, null, e.getOriginalMessage());
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            iterator.close();
+        }
+    }
+
+    class Csv implements RegistrationRequestReader {
+
+        private static final List<String> REQUIRED = List.of("firstname", "lastname", "email");
+        private static final List<String> COLUMNS = List.of("firstname", "lastname", "email", "username",
+                "password", "role");
+
+        private final BufferedReader reader;
+        // Per ogni colonna del file, la posizione del campo in COLUMNS
+        private final int[] columns;
+        private int number = 0;
+
+        Csv(BufferedReader reader) throws IOException {
+            this.reader = reader;
+            List<String> header = readRecord();
+            if (header == null) {
+                throw new IllegalArgumentException("Missing CSV header");
+            }
+            // Excel aggiunge il BOM in testa al file
+            List<String> names = header.stream()
+                    .map(name -> name.replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT))
+                    .toList();
+            for (String required : REQUIRED) {
+                if (!names.contains(required)) {
+                    throw new IllegalArgumentException("Missing CSV column: " + required);
+                }
+            }
+            columns = new int[names.size()];
+            for (int i = 0; i < names.size(); i++) {
+                columns[i] = COLUMNS.indexOf(names.get(i));
+                if (columns[i] < 0) {
+                    throw new IllegalArgumentException("Unknown CSV column: " + header.get(i));
+                }
+            }
+        }
+
+        @Override
+        public Row next() throws IOException {
+            List<String> record;
+            do {
+                record = readRecord();
+                if (record == null) {
+                    return null;
+                }
+                // Le righe vuote non contano
+            } while (record.size() == 1 && record.get(0).isBlank());
+
+            number++;
+            if (record.size() != columns.length) {
+                return new Row(number, null,
+                        "Expected " + columns.length + " columns, found " + record.size());
+            }
+            String[] values = new String[COLUMNS.size()];
+            for (int i = 0; i < columns.length; i++) {
+                String value = record.get(i).trim();
+                values[columns[i]] = value.isEmpty() ? null : value;
+            }
+            return new Row(number, new AppUserRegistrationRequest(values[0], values[1], values[2], values[3],
+                    values[4], values[5]), null);
+        }
+
+        // Un record CSV (RFC 4180): i campi tra virgolette possono contenere
+        // virgole, a capo e virgolette raddoppiate
+        private List<String> readRecord() throws IOException {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            boolean empty = true;
+            int c;
+            while ((c = reader.read()) != -1) {
+                empty = false;
+                if (quoted) {
+                    if (c != '"') {
+                        field.append((char) c);
+                        continue;
+                    }
+                    reader.mark(1);
+                    if (reader.read() == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        reader.reset();
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n') {
+                    break;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+            }
+            if (empty) {
+                return null;
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
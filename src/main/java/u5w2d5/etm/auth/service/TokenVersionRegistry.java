@@ -0,0 +1,102 @@
+package u5w2d5.etm.auth.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import u5w2d5.etm.auth.JwtClaims;
+import u5w2d5.etm.auth.JwtTokenUtil;
+import u5w2d5.etm.auth.repository.AppUserRepository;
+import u5w2d5.etm.auth.repository.projection.UserTokenVersion;
+
+/**
+ * Versione corrente dei token di ogni utente, usata dalla modalità stateless
+ * (jwt.stateless=true) per revocare i token dopo un cambio di password o di
+ * ruoli senza interrogare il database ad ogni richiesta.
+ *
+ * La mappa viene caricata all'avvio e ricaricata in background ogni
+ * jwt.revocation-refresh-ms millisecondi: è il tempo massimo entro cui una
+ * revoca fatta su un altro nodo diventa effettiva. Sul nodo che esegue la
+ * modifica è immediata.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TokenVersionRegistry implements SmartInitializingSingleton {
+
+    private final AppUserRepository appUserRepository;
+    private final JwtTokenUtil jwtTokenUtil;
+
+    // Ogni voce ricorda quando è stata scritta (contatore crescente): il refresh
+    // toglie solo le voci più vecchie della sua fotografia
+    private record Entry(long tokenVersion, long stamp) {
+
+        Entry max(Entry other) {
+            return other.tokenVersion > tokenVersion ? other : this;
+        }
+    }
+
+    private final Map<String, Entry> versions = new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong();
+
+    // Senza un primo caricamento nessun token sarebbe valido fino al primo refresh
+    @Override
+    public void afterSingletonsInstantiated() {
+        refresh();
+    }
+
+    @Scheduled(initialDelayString = "${jwt.revocation-refresh-ms:30000}",
+            fixedDelayString = "${jwt.revocation-refresh-ms:30000}")
+    public void refresh() {
+        if (!jwtTokenUtil.isStateless()) {
+            return;
+        }
+        long started = clock.incrementAndGet();
+        Map<String, Long> snapshot = new HashMap<>();
+        for (UserTokenVersion user : appUserRepository.findAllTokenVersions()) {
+            snapshot.put(user.getUsername(), user.getTokenVersion());
+        }
+        // Fusione nella mappa corrente invece di sostituirla: una revoca pubblicata
+        // mentre la query era in corso è più recente della fotografia e deve
+        // restare. Vengono tolti solo gli utenti assenti dalla fotografia e non
+        // aggiornati dopo il suo inizio: chi si è registrato o ha fatto login
+        // mentre la query era in corso resta
+        snapshot.forEach((username, tokenVersion) -> versions.merge(username, new Entry(tokenVersion, started),
+                Entry::max));
+        versions.entrySet().removeIf(entry -> entry.getValue().stamp() < started
+                && !snapshot.containsKey(entry.getKey()));
+        log.debug("Versioni dei token ricaricate: {} utenti", snapshot.size());
+    }
+
+    /**
+     * Un token è valido se porta una versione non inferiore a quella nota per il
+     * suo utente. Utenti sconosciuti (ad esempio cancellati) non sono validi.
+     */
+    public boolean isCurrent(JwtClaims claims) {
+        if (claims.getTokenVersion() == null) {
+            return false;
+        }
+        Entry current = versions.get(claims.getUsername());
+        return current != null && claims.getTokenVersion() >= current.tokenVersion();
+    }
+
+    // La versione non torna mai indietro: un login che ha letto la versione
+    // prima di una revoca non può riattivare i token revocati
+    public void update(String username, long tokenVersion) {
+        Entry entry = new Entry(tokenVersion, clock.incrementAndGet());
+        versions.merge(username, entry, (previous, next) -> previous.tokenVersion() > tokenVersion
+                ? new Entry(previous.tokenVersion(), next.stamp())
+                : next);
+    }
+
+    public void remove(String username) {
+        versions.remove(username);
+    }
+}
@@ -0,0 +1,78 @@
+package u5w2d5.etm.auth.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cache in memoria dei principal caricati da {@link CustomUserDetailsService}.
+ *
+ * Il filtro JWT carica l'utente ad ogni richiesta: senza cache sono almeno tre
+ * query (utente + ruoli EAGER) solo per l'autenticazione. La cache è limitata
+ * in dimensione e in durata e le sue statistiche (hit, miss, eviction) sono
+ * esposte come metriche "cache.*" con tag cache=userDetails.
+ *
+ * Le chiavi sono la stringa usata per il login (username o email), per cui
+ * l'invalidazione rimuove sempre entrambe.
+ */
+@Component
+@Slf4j
+public class UserDetailsCache {
+
+    public static final String CACHE_NAME = "userDetails";
+
+    private final Cache<String, UserDetails> cache;
+
+    public UserDetailsCache(
+            @Value("${etm.security.user-cache.max-size:10000}") long maximumSize,
+            @Value("${etm.security.user-cache.ttl:5m}") Duration timeToLive,
+            MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLive)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    public UserDetails get(String login, Function<String, UserDetails> loader) {
+        return cache.get(login, loader);
+    }
+
+    /**
+     * Rimuove subito l'utente dalla cache. Se c'è una transazione in corso lo
+     * rimuove di nuovo dopo il commit, così una richiesta concorrente non può
+     * rimettere in cache la versione precedente alla modifica.
+     */
+    public void evict(String username, String email) {
+        List<String> keys = email == null ? List.of(username) : List.of(username, email);
+        cache.invalidateAll(keys);
+        log.debug("Utente rimosso dalla cache: {}", username);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidateAll(keys);
+                }
+            });
+        }
+    }
+
+    public void evictAll() {
+        cache.invalidateAll();
+    }
+}
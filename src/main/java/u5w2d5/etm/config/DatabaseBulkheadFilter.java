@@ -0,0 +1,158 @@
+package u5w2d5.etm.config;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import u5w2d5.etm.exception.ServiceUnavailableException;
+
+/**
+ * Bulkhead davanti alle API: al massimo tante richieste contemporanee quante
+ * sono le connessioni del pool Hikari.
+ *
+ * Con i virtual thread (spring.threads.virtual.enabled=true) Tomcat non ha più
+ * un limite di thread: senza questo filtro migliaia di richieste finirebbero in
+ * coda su Hikari fino al suo timeout. Qui invece attendono al massimo
+ * etm.bulkhead.max-wait e poi ricevono un 503 con Retry-After.
+ *
+ * Il filtro precede Spring Security, perché anche il filtro JWT può leggere
+ * l'utente dal database. Le richieste asincrone (export) tengono il permesso
+ * fino al completamento.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@ConditionalOnProperty(name = "etm.bulkhead.enabled", havingValue = "true")
+@Slf4j
+public class DatabaseBulkheadFilter extends OncePerRequestFilter {
+
+    private final Semaphore permits;
+    private final long maxWaitNanos;
+    private final HandlerExceptionResolver handlerExceptionResolver;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final Counter rejected;
+
+    public DatabaseBulkheadFilter(DataSource dataSource,
+            @Value("${etm.bulkhead.permits:0}") int permits,
+            @Value("${etm.bulkhead.max-wait:500ms}") Duration maxWait,
+            @Qualifier("handlerExceptionResolver") HandlerExceptionResolver handlerExceptionResolver,
+            MeterRegistry meterRegistry) throws SQLException {
+        int size = permits > 0 ? permits : poolSize(dataSource);
+        this.permits = new Semaphore(size, true);
+        this.maxWaitNanos = maxWait.toNanos();
+        this.handlerExceptionResolver = handlerExceptionResolver;
+
+        Gauge.builder("etm.bulkhead.waiting", waiting, AtomicInteger::get)
+                .register(meterRegistry);
+        Gauge.builder("etm.bulkhead.active", active, AtomicInteger::get)
+                .register(meterRegistry);
+        Gauge.builder("etm.bulkhead.permits", this.permits, Semaphore::availablePermits)
+                .register(meterRegistry);
+        this.rejected = Counter.builder("etm.bulkhead.rejected")
+                .register(meterRegistry);
+        log.info("Bulkhead attivo: {} richieste contemporanee, attesa massima {}", size, maxWait);
+    }
+
+    // Il bulkhead ha senso solo se è grande quanto il pool di connessioni
+    private static int poolSize(DataSource dataSource) throws SQLException {
+        if (dataSource.isWrapperFor(HikariDataSource.class)) {
+            return dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+        }
+        throw new IllegalStateException("Set etm.bulkhead.permits: the connection pool is not Hikari");
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (!acquire()) {
+            rejected.increment();
+            handlerExceptionResolver.resolveException(request, response, null,
+                    new ServiceUnavailableException("Server is busy, retry later"));
+            return;
+        }
+
+        active.incrementAndGet();
+        boolean async = false;
+        try {
+            chain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                // Il lavoro continua su un altro thread: il permesso si libera alla fine
+                async = true;
+                request.getAsyncContext().addListener(new ReleasingListener());
+            }
+        } finally {
+            if (!async) {
+                release();
+            }
+        }
+    }
+
+    private boolean acquire() {
+        waiting.incrementAndGet();
+        try {
+            return permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    private void release() {
+        active.decrementAndGet();
+        permits.release();
+    }
+
+    // onComplete arriva anche dopo un timeout o un errore
+    private class ReleasingListener implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package u5w2d5.etm.config;
+
+import java.util.List;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+
+/**
+ * Cache di secondo livello di Hibernate per Trip, Employee (e AppUser) e i
+ * ruoli degli utenti.
+ *
+ * - Le regioni sono configurate in application.conf (dimensione massima e TTL
+ * per regione).
+ * - La strategia READ_WRITE aggiorna/invalida la cache al commit di ogni
+ * update o delete fatto tramite JPA (updateTrip, deleteTrip, updateEmployee,
+ * deleteEmployee); le scritture che bypassano Hibernate devono invalidare a
+ * mano con EntityManagerFactory.getCache().
+ * - Il CacheManager è un bean condiviso con Hibernate, così le statistiche delle
+ * regioni (hit, miss, put, eviction) diventano metriche cache.* con tag
+ * cache=&lt;regione&gt;.
+ */
+@Configuration
+public class SecondLevelCacheConfig {
+
+    public static final List<String> REGIONS = List.of("trips", "employees", "appUserRoles");
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager() {
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        return provider.getCacheManager(provider.getDefaultURI(), getClass().getClassLoader());
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+    }
+
+    @Bean
+    public MeterBinder secondLevelCacheMetrics(CacheManager hibernateCacheManager) {
+        return registry -> {
+            for (String region : REGIONS) {
+                Cache<Object, Object> cache = hibernateCacheManager.getCache(region);
+                if (cache != null) {
+                    JCacheMetrics.monitor(registry, cache);
+                }
+            }
+        };
+    }
+}
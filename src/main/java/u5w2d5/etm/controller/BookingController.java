@@ -1,13 +1,20 @@
 package u5w2d5.etm.controller;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Size;
 import lombok.RequiredArgsConstructor;
 import u5w2d5.etm.model.Booking;
 import u5w2d5.etm.request.BookingRequestDTO;
+import u5w2d5.etm.response.BookingBatchItemResponseDTO;
 import u5w2d5.etm.response.BookingResponseDTO;
 import u5w2d5.etm.response.IdResponse;
 import u5w2d5.etm.service.BookingService;
@@ -17,18 +24,36 @@ import java.util.List;
 @RequestMapping("/api/bookings")
 @RequiredArgsConstructor
 @PreAuthorize("isAuthenticated()")
+@Validated
 public class BookingController {
 
     private final BookingService bookingService;
 
     @GetMapping
-    public List<BookingResponseDTO> getAllDTO() {
-        return bookingService.getAllBookingsDTO();
+    public ResponseEntity<List<BookingResponseDTO>> getAllDTO(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return ConditionalResponses.withETag(ifNoneMatch, bookingService.getAllBookingsETag(),
+                bookingService::getAllBookingsDTO);
+    }
+
+    // Export completo per la contabilità: le righe vengono scritte man mano che
+    // arrivano dal cursore, senza caricare l'intera tabella in memoria
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "ndjson") String format) {
+        BookingService.ExportFormat exportFormat = BookingService.ExportFormat.fromString(format);
+        StreamingResponseBody body = outputStream -> bookingService.exportBookings(exportFormat, outputStream);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"bookings." + exportFormat.name().toLowerCase() + "\"")
+                .body(body);
     }
 
     @GetMapping("/{id}")
-    public BookingResponseDTO getBookingByIdDTO(@PathVariable Long id) {
-        return bookingService.getBookingByIdDTO(id);
+    public ResponseEntity<BookingResponseDTO> getBookingByIdDTO(@PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return ConditionalResponses.withETag(ifNoneMatch, bookingService.getBookingETag(id),
+                () -> bookingService.getBookingByIdDTO(id));
     }
 
     @PostMapping
@@ -38,6 +63,17 @@ public class BookingController {
         return bookingService.createBooking(booking);
     }
 
+    // Prenotazione di un intero gruppo in una sola chiamata: l'esito di ogni
+    // prenotazione è riportato nella risposta. Gli elementi non validi (null o
+    // senza id) risultano INVALID senza bloccare gli altri
+    @PostMapping("/batch")
+    @PreAuthorize("hasRole('ADMIN')")
+    public List<BookingBatchItemResponseDTO> createBookings(
+            @RequestBody @Size(max = BookingService.MAX_BATCH_SIZE, message = "A batch can contain at most "
+                    + BookingService.MAX_BATCH_SIZE + " bookings") List<BookingRequestDTO> bookings) {
+        return bookingService.createBookings(bookings);
+    }
+
     @PutMapping("/{id}")
     @ResponseStatus(HttpStatus.OK)
     @PreAuthorize("hasRole('ADMIN')")
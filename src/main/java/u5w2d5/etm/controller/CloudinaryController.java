@@ -1,36 +1,40 @@
 package u5w2d5.etm.controller;
 
-import com.cloudinary.Cloudinary;
 import lombok.RequiredArgsConstructor;
+import u5w2d5.etm.response.ImageUploadJobDTO;
+import u5w2d5.etm.service.ImageUploadService;
+
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestPart;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.IOException;
-import java.util.Map;
+import java.security.Principal;
 
 @RestController
 @RequestMapping("/api/images")
 @RequiredArgsConstructor
 public class CloudinaryController {
-    private final Cloudinary cloudinary;
+    private final ImageUploadService imageUploadService;
 
+    // L'upload prosegue in background: lo stato e l'URL si leggono da
+    // GET /api/images/jobs/{id}
     @PostMapping(path = "/uploadme", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public String upload(
-            @RequestPart("file") MultipartFile file) {
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public ImageUploadJobDTO upload(
+            @RequestPart("file") MultipartFile file, Principal principal) {
+        return imageUploadService.submit(file, principal.getName());
+    }
 
-        try {
-            Map result = cloudinary.uploader()
-                    .upload(file.getBytes(),
-                            Map.of("public_id", file.getOriginalFilename()));
-            String url = result.get("secure_url").toString();
-            return url;
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+    @GetMapping("/jobs/{id}")
+    public ImageUploadJobDTO getJob(@PathVariable String id, Principal principal) {
+        return imageUploadService.getJob(id, principal.getName());
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,54 @@
+package u5w2d5.etm.controller;
+
+import java.util.function.Supplier;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * GET condizionali con ETag.
+ *
+ * L'ETag viene calcolato prima della risposta (di solito con una query
+ * aggregata sulle colonne version): se coincide con If-None-Match si risponde
+ * 304 senza leggere i dati né serializzarli, altrimenti il body viene costruito
+ * normalmente.
+ */
+final class ConditionalResponses {
+
+    private ConditionalResponses() {
+    }
+
+    static <T> ResponseEntity<T> withETag(String ifNoneMatch, String tag, Supplier<T> body) {
+        String etag = "\"" + tag + "\"";
+        // no-cache invece del no-store di Spring Security: il client può tenere
+        // la risposta ma deve rivalidarla a ogni richiesta
+        if (matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache())
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .body(body.get());
+    }
+
+    // If-None-Match usa il confronto debole: "W/" davanti all'ETag è ammesso
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals("*") || value.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
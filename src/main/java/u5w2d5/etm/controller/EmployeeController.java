@@ -1,6 +1,8 @@
 package u5w2d5.etm.controller;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
@@ -32,13 +34,19 @@ public class EmployeeController {
     // public List<Employee> getAll() {
     // return employeeService.getAll();
     // }
-    public List<EmployeeResponseDTO> getAllDTO() {
-        return employeeService.getAllDTO();
+    public ResponseEntity<List<EmployeeResponseDTO>> getAllDTO(
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "" + EmployeeService.DEFAULT_PAGE_SIZE) int limit,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return ConditionalResponses.withETag(ifNoneMatch, employeeService.getAllETag(after, limit),
+                () -> employeeService.getAllDTO(after, limit));
     }
 
     @GetMapping("/{id}")
-    public EmployeeResponseDTO getEmployeeById(@PathVariable Long id) {
-        return employeeService.getEmployeeByIdDTO(id);
+    public ResponseEntity<EmployeeResponseDTO> getEmployeeById(@PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return ConditionalResponses.withETag(ifNoneMatch, employeeService.getEmployeeETag(id),
+                () -> employeeService.getEmployeeByIdDTO(id));
     }
 
     @PostMapping
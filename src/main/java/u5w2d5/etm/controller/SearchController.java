@@ -0,0 +1,31 @@
+package u5w2d5.etm.controller;
+
+import java.util.List;
+
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import lombok.RequiredArgsConstructor;
+import u5w2d5.etm.response.SearchResultDTO;
+import u5w2d5.etm.service.SearchIndex;
+
+@RestController
+@RequestMapping("/api/search")
+@RequiredArgsConstructor
+@PreAuthorize("isAuthenticated()")
+public class SearchController {
+
+    private final SearchIndex searchIndex;
+
+    // Ricerca per prefisso, ad esempio ?q=mar ros&type=EMPLOYEE per il
+    // selettore dei dipendenti
+    @GetMapping
+    public List<SearchResultDTO> search(@RequestParam String q,
+            @RequestParam(required = false) SearchResultDTO.Type type,
+            @RequestParam(defaultValue = "" + SearchIndex.DEFAULT_LIMIT) int limit) {
+        return searchIndex.search(q, type, limit);
+    }
+}
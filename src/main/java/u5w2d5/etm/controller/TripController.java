@@ -1,16 +1,22 @@
 package u5w2d5.etm.controller;
 
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import u5w2d5.etm.model.Trip;
+import u5w2d5.etm.model.TripStatus;
 import u5w2d5.etm.request.TripRequestDTO;
+import u5w2d5.etm.request.TripUpdateRequestDTO;
 import u5w2d5.etm.response.IdResponse;
 import u5w2d5.etm.response.TripResponseDTO;
 import u5w2d5.etm.service.TripService;
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
@@ -21,14 +27,22 @@ public class TripController {
 
     private final TripService tripService;
 
+    // Filtri facoltativi: ?from=2025-03-01&to=2025-03-31&status=SCHEDULED
     @GetMapping
-    public List<TripResponseDTO> getAllDTO() {
-        return tripService.getAllTripsDTO();
+    public ResponseEntity<List<TripResponseDTO>> getAllDTO(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) TripStatus status,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return ConditionalResponses.withETag(ifNoneMatch, tripService.getTripsETag(from, to, status),
+                () -> tripService.getTripsDTO(from, to, status));
     }
 
     @GetMapping("/{id}")
-    public TripResponseDTO getTripById(@PathVariable Long id) {
-        return tripService.getTripByIdDTO(id);
+    public ResponseEntity<TripResponseDTO> getTripById(@PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return ConditionalResponses.withETag(ifNoneMatch, tripService.getTripETag(id),
+                () -> tripService.getTripByIdDTO(id));
     }
 
     @PostMapping
@@ -41,7 +55,7 @@ public class TripController {
     @PutMapping("/{id}")
     @ResponseStatus(HttpStatus.OK)
     @PreAuthorize("hasRole('ADMIN')")
-    public Trip updateTrip(@PathVariable Long id, @RequestBody Trip tripDetails) {
+    public Trip updateTrip(@PathVariable Long id, @Valid @RequestBody TripUpdateRequestDTO tripDetails) {
         Trip updatedTrip = tripService.updateTrip(id, tripDetails);
         return updatedTrip;
     }
@@ -0,0 +1,13 @@
+package u5w2d5.etm.exception;
+
+/**
+ * Sollevata quando la richiesta è valida ma in conflitto con lo stato attuale
+ * delle risorse (ad esempio un viaggio senza più posti). Viene tradotta in un
+ * 409.
+ */
+public class ConflictException extends RuntimeException {
+
+    public ConflictException(String message) {
+        super(message);
+    }
+}
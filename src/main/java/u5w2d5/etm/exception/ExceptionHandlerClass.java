@@ -3,6 +3,7 @@ package u5w2d5.etm.exception;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
@@ -49,6 +50,30 @@ public class ExceptionHandlerClass {
         return new ResponseEntity<ExceptionMessage>(exceptionMessage, HttpStatus.CONFLICT);
     }
 
+    @ExceptionHandler(value = ConflictException.class)
+    protected ResponseEntity<ExceptionMessage> handleConflictException(ConflictException e) {
+
+        ExceptionMessage exceptionMessage = new ExceptionMessage();
+        exceptionMessage.setMessage(e.getMessage());
+        exceptionMessage.setStatus("409");
+        exceptionMessage.setError("Conflict");
+
+        return new ResponseEntity<ExceptionMessage>(exceptionMessage, HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(value = ServiceUnavailableException.class)
+    protected ResponseEntity<ExceptionMessage> handleServiceUnavailableException(ServiceUnavailableException e) {
+
+        ExceptionMessage exceptionMessage = new ExceptionMessage();
+        exceptionMessage.setMessage(e.getMessage());
+        exceptionMessage.setStatus("503");
+        exceptionMessage.setError("Service Unavailable");
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(exceptionMessage);
+    }
+
     @ExceptionHandler(ConstraintViolationException.class)
     public ResponseEntity<ExceptionMessage> handleConsraintViolationException(ConstraintViolationException e,
             HttpServletRequest request) {
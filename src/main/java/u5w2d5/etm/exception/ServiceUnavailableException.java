@@ -0,0 +1,16 @@
+package u5w2d5.etm.exception;
+
+/**
+ * Sollevata quando una risorsa limitata (pool, coda) è satura e la richiesta
+ * viene rifiutata subito invece di restare in attesa. Viene tradotta in un 503.
+ */
+public class ServiceUnavailableException extends RuntimeException {
+
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+
+    public ServiceUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,29 @@
+package u5w2d5.etm.mapper;
+
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.MappingConstants;
+
+import u5w2d5.etm.model.Booking;
+import u5w2d5.etm.request.BookingRequestDTO;
+import u5w2d5.etm.response.BookingResponseDTO;
+
+/**
+ * Conversioni tra Booking e i suoi DTO, generate da MapStruct in fase di
+ * compilazione.
+ */
+@Mapper(componentModel = MappingConstants.ComponentModel.SPRING)
+public interface BookingMapper {
+
+    // Con BeanUtils tripId ed employeeId restavano null: i nomi non coincidono
+    @Mapping(target = "tripId", source = "trip.id")
+    @Mapping(target = "employeeId", source = "employee.id")
+    BookingResponseDTO toResponse(Booking booking);
+
+    // Dipendente e viaggio vengono caricati dal service a partire dagli id
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "employee", ignore = true)
+    @Mapping(target = "trip", ignore = true)
+    Booking toEntity(BookingRequestDTO bookingRequest);
+}
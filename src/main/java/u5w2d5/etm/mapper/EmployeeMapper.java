@@ -0,0 +1,26 @@
+package u5w2d5.etm.mapper;
+
+import java.util.List;
+
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.MappingConstants;
+
+import u5w2d5.etm.model.Employee;
+import u5w2d5.etm.request.EmployeeRequestDTO;
+import u5w2d5.etm.response.EmployeeResponseDTO;
+
+/**
+ * Conversioni tra Employee e i suoi DTO, generate da MapStruct in fase di
+ * compilazione.
+ */
+@Mapper(componentModel = MappingConstants.ComponentModel.SPRING)
+public interface EmployeeMapper {
+
+    EmployeeResponseDTO toResponse(Employee employee, List<Long> tripIds);
+
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "bookings", ignore = true)
+    Employee toEntity(EmployeeRequestDTO employeeRequest);
+}
@@ -0,0 +1,28 @@
+package u5w2d5.etm.mapper;
+
+import java.util.List;
+
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.MappingConstants;
+
+import u5w2d5.etm.model.Trip;
+import u5w2d5.etm.request.TripRequestDTO;
+import u5w2d5.etm.response.TripResponseDTO;
+
+/**
+ * Conversioni tra Trip e i suoi DTO, generate da MapStruct in fase di
+ * compilazione: niente reflection a runtime e un campo nuovo non mappato fa
+ * fallire la build.
+ */
+@Mapper(componentModel = MappingConstants.ComponentModel.SPRING)
+public interface TripMapper {
+
+    TripResponseDTO toResponse(Trip trip, List<Long> employeeIds);
+
+    // id, versione e prenotazioni sono gestiti da JPA, non arrivano dal client
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "bookings", ignore = true)
+    Trip toEntity(TripRequestDTO tripRequest);
+}
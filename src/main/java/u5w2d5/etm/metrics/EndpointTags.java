@@ -0,0 +1,38 @@
+package u5w2d5.etm.metrics;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.HandlerMapping;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Tag comuni alle metriche dell'applicazione.
+ *
+ * L'endpoint è il pattern del mapping (es. "GET /api/trips/{id}") e non l'URI,
+ * così il numero di serie resta limitato. Prima che Spring MVC abbia scelto il
+ * controller, o fuori da una richiesta HTTP, vale {@value #NONE}.
+ */
+public final class EndpointTags {
+
+    public static final String ENDPOINT = "endpoint";
+    public static final String OUTCOME = "outcome";
+    public static final String NONE = "none";
+
+    private EndpointTags() {
+    }
+
+    public static String endpoint(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern == null ? NONE : request.getMethod() + " " + pattern;
+    }
+
+    public static String currentEndpoint() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes instanceof ServletRequestAttributes servletAttributes) {
+            return endpoint(servletAttributes.getRequest());
+        }
+        return NONE;
+    }
+}
@@ -0,0 +1,45 @@
+package u5w2d5.etm.metrics;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.InitializeCollectionEventListener;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Collega Hibernate a {@link RequestStatistics}: il listener di sessione per gli
+ * statement JDBC, lo statement inspector per il testo SQL e due listener di
+ * evento per le entità caricate e le collezioni inizializzate.
+ */
+@Configuration
+public class HibernateRequestStatisticsConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer requestStatisticsSessionListener() {
+        return properties -> {
+            properties.put(AvailableSettings.AUTO_SESSION_EVENTS_LISTENER,
+                    RequestStatisticsSessionListener.class.getName());
+            properties.put(AvailableSettings.STATEMENT_INSPECTOR, new RequestStatementInspector());
+        };
+    }
+
+    @Bean
+    public SmartInitializingSingleton requestStatisticsEventListeners(EntityManagerFactory entityManagerFactory) {
+        return () -> {
+            EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                    .getServiceRegistry()
+                    .getService(EventListenerRegistry.class);
+            registry.appendListeners(EventType.POST_LOAD,
+                    (PostLoadEventListener) event -> RequestStatistics.entityLoaded());
+            registry.appendListeners(EventType.INIT_COLLECTION,
+                    (InitializeCollectionEventListener) event -> RequestStatistics.collectionFetched());
+        };
+    }
+}
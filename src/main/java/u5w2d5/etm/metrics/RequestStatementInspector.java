@@ -0,0 +1,16 @@
+package u5w2d5.etm.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Registra ogni SQL preparato da Hibernate nelle {@link RequestStatistics} del
+ * thread corrente, senza modificarlo.
+ */
+public class RequestStatementInspector implements StatementInspector {
+
+    @Override
+    public String inspect(String sql) {
+        RequestStatistics.statementPrepared(sql);
+        return sql;
+    }
+}
@@ -0,0 +1,98 @@
+package u5w2d5.etm.metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Contatori Hibernate del lavoro in corso sul thread corrente (di solito una
+ * richiesta HTTP): statement JDBC eseguiti e loro durata, entità caricate e
+ * collezioni inizializzate in modo lazy.
+ *
+ * I contatori vengono alimentati da {@link RequestStatisticsSessionListener},
+ * {@link RequestStatementInspector} e dai listener registrati in
+ * {@link HibernateRequestStatisticsConfig}; fuori da {@link #start()} /
+ * {@link #clear()} non viene registrato nulla.
+ */
+public final class RequestStatistics {
+
+    private static final ThreadLocal<RequestStatistics> CURRENT = new ThreadLocal<>();
+
+    private int statements;
+    private long statementNanos;
+    private int entityLoads;
+    private int collectionFetches;
+    // Quante volte è stato preparato ogni SQL: un N+1 è lo stesso SQL ripetuto
+    private final Map<String, Integer> preparedStatements = new HashMap<>();
+
+    private RequestStatistics() {
+    }
+
+    public static RequestStatistics start() {
+        RequestStatistics statistics = new RequestStatistics();
+        CURRENT.set(statistics);
+        return statistics;
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    static void statementExecuted(long nanos) {
+        RequestStatistics statistics = CURRENT.get();
+        if (statistics != null) {
+            statistics.statements++;
+            statistics.statementNanos += nanos;
+        }
+    }
+
+    static void statementPrepared(String sql) {
+        RequestStatistics statistics = CURRENT.get();
+        if (statistics != null) {
+            statistics.preparedStatements.merge(sql, 1, Integer::sum);
+        }
+    }
+
+    static void entityLoaded() {
+        RequestStatistics statistics = CURRENT.get();
+        if (statistics != null) {
+            statistics.entityLoads++;
+        }
+    }
+
+    static void collectionFetched() {
+        RequestStatistics statistics = CURRENT.get();
+        if (statistics != null) {
+            statistics.collectionFetches++;
+        }
+    }
+
+    public int getStatements() {
+        return statements;
+    }
+
+    public long getStatementNanos() {
+        return statementNanos;
+    }
+
+    public int getEntityLoads() {
+        return entityLoads;
+    }
+
+    public int getCollectionFetches() {
+        return collectionFetches;
+    }
+
+    /**
+     * L'SQL preparato più volte durante la richiesta, o null se nessuno è stato
+     * ripetuto.
+     */
+    public Map.Entry<String, Integer> getMostRepeatedStatement() {
+        Map.Entry<String, Integer> mostRepeated = null;
+        for (Map.Entry<String, Integer> entry : preparedStatements.entrySet()) {
+            if (entry.getValue() > 1 && (mostRepeated == null || entry.getValue() > mostRepeated.getValue())) {
+                mostRepeated = entry;
+            }
+        }
+        return mostRepeated;
+    }
+}
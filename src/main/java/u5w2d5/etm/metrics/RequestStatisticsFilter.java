@@ -0,0 +1,142 @@
+package u5w2d5.etm.metrics;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.metrics.http.Outcome;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.web.util.OnCommittedResponseWrapper;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Raccoglie le {@link RequestStatistics} di ogni richiesta alle API e le
+ * pubblica come distribuzioni per endpoint ed esito:
+ * - etm.hibernate.request.statements
+ * - etm.hibernate.request.entity.loads
+ * - etm.hibernate.request.collection.fetches
+ * - etm.hibernate.request.statement.time
+ *
+ * Fa anche da rilevatore di N+1: sopra etm.query-detector.warn-threshold
+ * statement logga un warning con l'SQL più ripetuto e, se
+ * etm.query-detector.headers=true, restituisce conteggio e tempo JDBC negli
+ * header {@value #QUERY_COUNT_HEADER} e {@value #QUERY_TIME_HEADER} (ms).
+ *
+ * Precede Spring Security, così include anche le query del filtro JWT.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 20)
+@RequiredArgsConstructor
+@Slf4j
+public class RequestStatisticsFilter extends OncePerRequestFilter {
+
+    public static final String QUERY_COUNT_HEADER = "X-Query-Count";
+    public static final String QUERY_TIME_HEADER = "X-Query-Time";
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${etm.query-detector.warn-threshold:20}")
+    private int warnThreshold;
+
+    @Value("${etm.query-detector.headers:false}")
+    private boolean headers;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RequestStatistics statistics = RequestStatistics.start();
+        QueryHeadersResponse headersResponse = headers ? new QueryHeadersResponse(response, statistics) : null;
+        try {
+            chain.doFilter(request, headersResponse != null ? headersResponse : response);
+        } finally {
+            RequestStatistics.clear();
+            if (headersResponse != null) {
+                // Risposta senza body: gli header non sono ancora stati scritti
+                headersResponse.writeHeaders();
+            }
+            String endpoint = EndpointTags.endpoint(request);
+            record(statistics, Tags.of(
+                    EndpointTags.ENDPOINT, endpoint,
+                    EndpointTags.OUTCOME, Outcome.forStatus(response.getStatus()).name()));
+            if (statistics.getStatements() > warnThreshold) {
+                warn(request, endpoint, statistics);
+            }
+        }
+    }
+
+    private void warn(HttpServletRequest request, String endpoint, RequestStatistics statistics) {
+        Map.Entry<String, Integer> mostRepeated = statistics.getMostRepeatedStatement();
+        log.warn("{} statement ({} ms) per {} {} [{}]{}",
+                statistics.getStatements(),
+                TimeUnit.NANOSECONDS.toMillis(statistics.getStatementNanos()),
+                request.getMethod(), request.getRequestURI(), endpoint,
+                mostRepeated == null ? ""
+                        : " - possibile N+1, ripetuto " + mostRepeated.getValue() + " volte: " + mostRepeated.getKey());
+    }
+
+    private void record(RequestStatistics statistics, Tags tags) {
+        DistributionSummary.builder("etm.hibernate.request.statements")
+                .tags(tags)
+                .register(meterRegistry)
+                .record(statistics.getStatements());
+        DistributionSummary.builder("etm.hibernate.request.entity.loads")
+                .tags(tags)
+                .register(meterRegistry)
+                .record(statistics.getEntityLoads());
+        DistributionSummary.builder("etm.hibernate.request.collection.fetches")
+                .tags(tags)
+                .register(meterRegistry)
+                .record(statistics.getCollectionFetches());
+        Timer.builder("etm.hibernate.request.statement.time")
+                .tags(tags)
+                .register(meterRegistry)
+                .record(statistics.getStatementNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    // Gli header vanno scritti prima che la risposta venga inviata: si usa il
+    // primo commit della risposta, come fa Spring Security per i suoi header
+    private static class QueryHeadersResponse extends OnCommittedResponseWrapper {
+
+        private final RequestStatistics statistics;
+        private boolean written = false;
+
+        QueryHeadersResponse(HttpServletResponse response, RequestStatistics statistics) {
+            super(response);
+            this.statistics = statistics;
+        }
+
+        @Override
+        protected void onResponseCommitted() {
+            writeHeaders();
+        }
+
+        void writeHeaders() {
+            if (written || isCommitted()) {
+                return;
+            }
+            written = true;
+            setHeader(QUERY_COUNT_HEADER, String.valueOf(statistics.getStatements()));
+            setHeader(QUERY_TIME_HEADER,
+                    String.valueOf(TimeUnit.NANOSECONDS.toMillis(statistics.getStatementNanos())));
+        }
+    }
+}
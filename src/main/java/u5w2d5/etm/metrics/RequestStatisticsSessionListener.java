@@ -0,0 +1,33 @@
+package u5w2d5.etm.metrics;
+
+import org.hibernate.SessionEventListener;
+
+/**
+ * Listener aggiunto da Hibernate a ogni sessione (hibernate.session.events.auto):
+ * conta gli statement eseguiti e ne misura la durata. Una sessione è usata da un
+ * solo thread alla volta, quindi basta un campo per l'istante di inizio.
+ */
+public class RequestStatisticsSessionListener implements SessionEventListener {
+
+    private long executionStart;
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        executionStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        RequestStatistics.statementExecuted(System.nanoTime() - executionStart);
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        executionStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        RequestStatistics.statementExecuted(System.nanoTime() - executionStart);
+    }
+}
@@ -0,0 +1,47 @@
+package u5w2d5.etm.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Timer etm.service per ogni metodo pubblico dei service applicativi, con tag
+ * service, method, endpoint e outcome ("success" o il nome dell'eccezione).
+ */
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class ServiceMetricsAspect {
+
+    private final MeterRegistry meterRegistry;
+
+    @Around("execution(public * u5w2d5.etm.service.EmployeeService.*(..))"
+            + " || execution(public * u5w2d5.etm.service.TripService.*(..))"
+            + " || execution(public * u5w2d5.etm.service.BookingService.*(..))"
+            + " || execution(public * u5w2d5.etm.auth.service.AppUserService.*(..))")
+    public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+        long start = System.nanoTime();
+        String outcome = "success";
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            outcome = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            Timer.builder("etm.service")
+                    .tag("service", joinPoint.getSignature().getDeclaringType().getSimpleName())
+                    .tag("method", joinPoint.getSignature().getName())
+                    .tag(EndpointTags.ENDPOINT, EndpointTags.currentEndpoint())
+                    .tag(EndpointTags.OUTCOME, outcome)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -11,10 +11,17 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "bookings")
+@Table(name = "bookings", uniqueConstraints = {
+        @UniqueConstraint(name = Booking.UNIQUE_EMPLOYEE_TRIP, columnNames = { "employee_id", "trip_id" }) })
 public class Booking {
+
+    public static final String UNIQUE_EMPLOYEE_TRIP = "uk_bookings_employee_trip";
+
+    // Sequenza invece di IDENTITY: Hibernate può assegnare gli id senza un
+    // INSERT immediato e quindi raggruppare gli insert in batch JDBC
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "bookings_seq")
+    @SequenceGenerator(name = "bookings_seq", sequenceName = "bookings_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne
@@ -27,4 +34,9 @@ public class Booking {
     private LocalDateTime requestDate = LocalDateTime.now();
 
     private String notes;
+
+    // Incrementata da Hibernate a ogni modifica: è la base dell'ETag della
+    // prenotazione
+    @Version
+    private long version;
 }
@@ -4,6 +4,9 @@ package u5w2d5.etm.model;
 import java.time.LocalDateTime;
 import java.util.List;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 import jakarta.persistence.*;
@@ -16,6 +19,8 @@ import lombok.AllArgsConstructor;
 @AllArgsConstructor
 @Entity
 @Table(name = "employees")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "employees")
 @JsonIgnoreProperties({ "bookings" })
 public class Employee {
     @Id
@@ -35,6 +40,10 @@ public class Employee {
 
     protected String avatarUrl;
 
+    // Incrementata da Hibernate a ogni modifica: è la base dell'ETag del dipendente
+    @Version
+    protected long version;
+
     @OneToMany(mappedBy = "employee", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Booking> bookings;
 
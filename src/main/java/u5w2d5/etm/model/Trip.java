@@ -8,13 +8,23 @@ import lombok.AllArgsConstructor;
 import java.time.LocalDate;
 import java.util.List;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "trips")
+// Filtro per stato e periodo (GET /api/trips?status=&from=&to=): lo stato è
+// un'uguaglianza, quindi viene prima delle date
+@Table(name = "trips", indexes = {
+        @Index(name = "idx_trips_status_dates", columnList = "status, start_date, end_date") })
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "trips")
 @JsonIgnoreProperties({ "bookings" })
 public class Trip {
     @Id
@@ -30,9 +40,19 @@ public class Trip {
     @Column(nullable = false)
     private LocalDate endDate;
 
+    // Ordinale salvato come smallint, lo stesso tipo che PostgreSQL usa già: H2
+    // in modalità PostgreSQL (profilo embedded) non accetta tinyint
+    @JdbcTypeCode(SqlTypes.SMALLINT)
     @Column(nullable = false)
     private TripStatus status;
 
+    // Numero massimo di prenotazioni; null = nessun limite
+    private Integer capacity;
+
+    // Incrementata da Hibernate a ogni modifica: è la base dell'ETag del viaggio
+    @Version
+    private long version;
+
     @OneToMany(mappedBy = "trip", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Booking> bookings;
 }
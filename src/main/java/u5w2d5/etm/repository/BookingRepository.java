@@ -1,12 +1,21 @@
 package u5w2d5.etm.repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import u5w2d5.etm.model.Booking;
 import u5w2d5.etm.model.Employee;
 import u5w2d5.etm.model.Trip;
+import u5w2d5.etm.repository.projection.BookingInterval;
+import u5w2d5.etm.repository.projection.EmployeeTripId;
+import u5w2d5.etm.repository.projection.TripEmployeeId;
+import u5w2d5.etm.repository.projection.VersionStamp;
+import u5w2d5.etm.response.BookingResponseDTO;
 
 @Repository
 public interface BookingRepository extends JpaRepository<Booking, Long> {
@@ -15,5 +24,62 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
 
     public List<Booking> findByEmployeeId(long employeeId);
 
-    public boolean existsByEmployeeAndTrip(Employee employee, Trip trip);
-}
\ No newline at end of file
+    // DTO costruiti direttamente dalla query: niente caricamento (EAGER) di
+    // dipendente e viaggio per ogni prenotazione
+    @Query("select new u5w2d5.etm.response.BookingResponseDTO(b.id, b.trip.id, b.employee.id, b.requestDate, b.notes) "
+            + "from Booking b order by b.id")
+    public List<BookingResponseDTO> findAllAsResponse();
+
+    @Query("select t from Booking b join b.trip t where b.employee.id = :employeeId order by t.id")
+    public List<Trip> findTripsByEmployeeId(@Param("employeeId") Long employeeId);
+
+    // Legge solo le chiavi esterne: nessun join su employees/trips
+    @Query("select b.employee.id as employeeId, b.trip.id as tripId from Booking b "
+            + "where b.employee.id in :employeeIds order by b.employee.id, b.trip.id")
+    public List<EmployeeTripId> findTripIdsByEmployeeIds(@Param("employeeIds") Collection<Long> employeeIds);
+
+    @Query("select b.trip.id from Booking b where b.employee.id = :employeeId order by b.trip.id")
+    public List<Long> findTripIdsByEmployeeId(@Param("employeeId") Long employeeId);
+
+    // Roster dei viaggi: una sola query sulle chiavi esterne, senza idratare
+    // Employee/AppUser
+    @Query("select b.trip.id as tripId, b.employee.id as employeeId from Booking b "
+            + "order by b.trip.id, b.employee.id")
+    public List<TripEmployeeId> findAllTripRosters();
+
+    @Query("select b.trip.id as tripId, b.employee.id as employeeId from Booking b "
+            + "where b.trip.id in :tripIds order by b.trip.id, b.employee.id")
+    public List<TripEmployeeId> findTripRostersByTripIds(@Param("tripIds") Collection<Long> tripIds);
+
+    @Query("select b.employee.id from Booking b where b.trip.id = :tripId order by b.employee.id")
+    public List<Long> findEmployeeIdsByTripId(@Param("tripId") Long tripId);
+
+    // Superset delle coppie già prenotate: il filtro sulle coppie esatte si fa
+    // in memoria, così basta una query per tutto il batch
+    @Query("select b.employee.id as employeeId, b.trip.id as tripId from Booking b "
+            + "where b.employee.id in :employeeIds and b.trip.id in :tripIds")
+    public List<EmployeeTripId> findExistingPairs(@Param("employeeIds") Collection<Long> employeeIds,
+            @Param("tripIds") Collection<Long> tripIds);
+
+    // Periodi prenotati da ogni dipendente, già ordinati per costruire gli
+    // indici senza riordinare in memoria
+    @Query("select b.employee.id as employeeId, t.id as tripId, t.startDate as startDate, t.endDate as endDate "
+            + "from Booking b join b.trip t order by b.employee.id, t.startDate, t.id")
+    public List<BookingInterval> findAllIntervals();
+
+    public long countByTripId(Long tripId);
+
+    @Query("select b.version from Booking b where b.id = :id")
+    public Optional<Long> findVersionById(@Param("id") Long id);
+
+    @Query("select count(b) as total, sum(b.version) as versionSum, max(b.id) as maxId from Booking b")
+    public VersionStamp findVersionStamp();
+
+    @Query("select count(b) as total, sum(b.version) as versionSum, max(b.id) as maxId from Booking b "
+            + "where b.trip.id = :tripId")
+    public VersionStamp findVersionStampByTripId(@Param("tripId") Long tripId);
+
+    @Query("select count(b) as total, sum(b.version) as versionSum, max(b.id) as maxId from Booking b "
+            + "where b.employee.id = :employeeId")
+    public VersionStamp findVersionStampByEmployeeId(@Param("employeeId") Long employeeId);
+}
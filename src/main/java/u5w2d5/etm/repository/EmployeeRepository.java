@@ -1,9 +1,36 @@
 package u5w2d5.etm.repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import u5w2d5.etm.model.Employee;
+import u5w2d5.etm.repository.projection.EmployeeSummary;
+import u5w2d5.etm.repository.projection.VersionStamp;
 
 @Repository
 public interface EmployeeRepository extends JpaRepository<Employee, Long> {
-}
\ No newline at end of file
+
+    // Paginazione keyset: una pagina = gli id successivi al cursore "after"
+    public List<EmployeeSummary> findByIdGreaterThanOrderByIdAsc(Long after, Limit limit);
+
+    // Tutti i dipendenti senza idratare le entità: serve all'indice di ricerca
+    @Query("select e.id as id, e.username as username, e.firstName as firstName, e.lastName as lastName, "
+            + "e.email as email, e.avatarUrl as avatarUrl from Employee e")
+    public List<EmployeeSummary> findAllSummaries();
+
+    @Query("select e.id from Employee e where e.id in :ids")
+    public Set<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    @Query("select e.version from Employee e where e.id = :id")
+    public Optional<Long> findVersionById(@Param("id") Long id);
+
+    @Query("select count(e) as total, sum(e.version) as versionSum, max(e.id) as maxId from Employee e")
+    public VersionStamp findVersionStamp();
+}
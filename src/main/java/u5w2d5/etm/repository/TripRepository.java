@@ -1,11 +1,81 @@
 package u5w2d5.etm.repository;
 
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import u5w2d5.etm.model.Trip;
+import u5w2d5.etm.model.TripStatus;
+import u5w2d5.etm.repository.projection.IdRange;
+import u5w2d5.etm.repository.projection.TripDescription;
+import u5w2d5.etm.repository.projection.TripInterval;
+import u5w2d5.etm.repository.projection.TripSeats;
+import u5w2d5.etm.repository.projection.VersionStamp;
 
 @Repository
 public interface TripRepository extends JpaRepository<Trip, Long> {
 
-}
\ No newline at end of file
+    @Query("select t.id from Trip t where t.id in :ids")
+    public Set<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    @Query("select t.id as id, t.description as description from Trip t")
+    public List<TripDescription> findAllDescriptions();
+
+    @Query("select t.id as id, t.startDate as startDate, t.endDate as endDate from Trip t")
+    public List<TripInterval> findAllIntervals();
+
+    // Verifica l'esistenza e legge le date nella stessa query
+    @Query("select t.id as id, t.startDate as startDate, t.endDate as endDate from Trip t where t.id in :ids")
+    public List<TripInterval> findIntervalsByIds(@Param("ids") Collection<Long> ids);
+
+    // Usa l'indice idx_trips_status_dates
+    @Query("select t from Trip t where t.status = :status and t.startDate <= :to and t.endDate >= :from "
+            + "order by t.startDate, t.id")
+    public List<Trip> findByStatusOverlapping(@Param("status") TripStatus status, @Param("from") LocalDate from,
+            @Param("to") LocalDate to);
+
+    // Transizioni di stato a blocchi di id (TripStatusScheduler). Gli update non
+    // caricano entità e incrementano la versione, così cambia l'ETag
+    @Query("select min(t.id) as minId, max(t.id) as maxId from Trip t "
+            + "where t.status in :statuses and t.endDate < :date")
+    public IdRange findIdRangeEndedBefore(@Param("statuses") Collection<TripStatus> statuses,
+            @Param("date") LocalDate date);
+
+    @Modifying
+    @Query("update Trip t set t.status = :status, t.version = t.version + 1 "
+            + "where t.status in :statuses and t.endDate < :date and t.id between :firstId and :lastId")
+    public int updateStatusEndedBefore(@Param("status") TripStatus status,
+            @Param("statuses") Collection<TripStatus> statuses, @Param("date") LocalDate date,
+            @Param("firstId") long firstId, @Param("lastId") long lastId);
+
+    @Query("select min(t.id) as minId, max(t.id) as maxId from Trip t "
+            + "where t.status in :statuses and t.startDate <= :date and t.endDate >= :date")
+    public IdRange findIdRangeActiveOn(@Param("statuses") Collection<TripStatus> statuses,
+            @Param("date") LocalDate date);
+
+    @Modifying
+    @Query("update Trip t set t.status = :status, t.version = t.version + 1 "
+            + "where t.status in :statuses and t.startDate <= :date and t.endDate >= :date "
+            + "and t.id between :firstId and :lastId")
+    public int updateStatusActiveOn(@Param("status") TripStatus status,
+            @Param("statuses") Collection<TripStatus> statuses, @Param("date") LocalDate date,
+            @Param("firstId") long firstId, @Param("lastId") long lastId);
+
+    @Query("select t.id as tripId, t.capacity as capacity, count(b.id) as booked "
+            + "from Trip t left join t.bookings b where t.capacity is not null group by t.id, t.capacity")
+    public List<TripSeats> findSeatUsage();
+
+    @Query("select t.version from Trip t where t.id = :id")
+    public Optional<Long> findVersionById(@Param("id") Long id);
+
+    @Query("select count(t) as total, sum(t.version) as versionSum, max(t.id) as maxId from Trip t")
+    public VersionStamp findVersionStamp();
+}
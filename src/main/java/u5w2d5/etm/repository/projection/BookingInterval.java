@@ -0,0 +1,14 @@
+package u5w2d5.etm.repository.projection;
+
+import java.time.LocalDate;
+
+public interface BookingInterval {
+
+    Long getEmployeeId();
+
+    Long getTripId();
+
+    LocalDate getStartDate();
+
+    LocalDate getEndDate();
+}
@@ -0,0 +1,21 @@
+package u5w2d5.etm.repository.projection;
+
+/**
+ * Proiezione "chiusa" di {@link u5w2d5.etm.model.Employee}: Spring Data
+ * seleziona solo queste colonne, senza idratare l'entità (né la sottoclasse
+ * AppUser con password e ruoli EAGER).
+ */
+public interface EmployeeSummary {
+
+    Long getId();
+
+    String getUsername();
+
+    String getFirstName();
+
+    String getLastName();
+
+    String getEmail();
+
+    String getAvatarUrl();
+}
@@ -0,0 +1,11 @@
+package u5w2d5.etm.repository.projection;
+
+/**
+ * Coppia (dipendente, viaggio) letta direttamente dalla tabella bookings.
+ */
+public interface EmployeeTripId {
+
+    Long getEmployeeId();
+
+    Long getTripId();
+}
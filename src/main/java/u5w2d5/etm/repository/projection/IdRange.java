@@ -0,0 +1,14 @@
+package u5w2d5.etm.repository.projection;
+
+// Id minimo e massimo delle righe che soddisfano una condizione; entrambi null
+// se non ce ne sono
+public interface IdRange {
+
+    Long getMinId();
+
+    Long getMaxId();
+
+    default boolean isEmpty() {
+        return getMinId() == null || getMaxId() == null;
+    }
+}
@@ -0,0 +1,8 @@
+package u5w2d5.etm.repository.projection;
+
+public interface TripDescription {
+
+    Long getId();
+
+    String getDescription();
+}
@@ -0,0 +1,11 @@
+package u5w2d5.etm.repository.projection;
+
+/**
+ * Coppia (viaggio, dipendente) letta direttamente dalla tabella bookings.
+ */
+public interface TripEmployeeId {
+
+    Long getTripId();
+
+    Long getEmployeeId();
+}
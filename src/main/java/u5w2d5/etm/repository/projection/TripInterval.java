@@ -0,0 +1,12 @@
+package u5w2d5.etm.repository.projection;
+
+import java.time.LocalDate;
+
+public interface TripInterval {
+
+    Long getId();
+
+    LocalDate getStartDate();
+
+    LocalDate getEndDate();
+}
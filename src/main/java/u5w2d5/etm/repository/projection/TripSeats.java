@@ -0,0 +1,13 @@
+package u5w2d5.etm.repository.projection;
+
+/**
+ * Capienza di un viaggio e numero di prenotazioni già registrate.
+ */
+public interface TripSeats {
+
+    Long getTripId();
+
+    Integer getCapacity();
+
+    Long getBooked();
+}
@@ -0,0 +1,22 @@
+package u5w2d5.etm.repository.projection;
+
+/**
+ * Impronta di una tabella (o di una parte) calcolata dalle colonne version:
+ * cambia a ogni insert, update o delete delle righe considerate.
+ * - update: la somma delle versioni cresce sempre
+ * - insert: crescono il numero di righe e l'id massimo
+ * - delete: cala il numero di righe
+ */
+public interface VersionStamp {
+
+    Long getTotal();
+
+    Long getVersionSum();
+
+    Long getMaxId();
+
+    default String asTag() {
+        return getTotal() + "." + (getVersionSum() == null ? 0 : getVersionSum()) + "."
+                + (getMaxId() == null ? 0 : getMaxId());
+    }
+}
@@ -1,6 +1,7 @@
 package u5w2d5.etm.request;
 
 import jakarta.persistence.*;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
 import lombok.Data;
@@ -26,4 +27,7 @@ public class TripRequestDTO {
 
     @Enumerated(EnumType.STRING)
     private TripStatus status = TripStatus.SCHEDULED;
+
+    @Min(value = 1, message = "Capienza deve essere un numero positivo")
+    private Integer capacity;
 }
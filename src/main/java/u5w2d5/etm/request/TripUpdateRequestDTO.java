@@ -0,0 +1,39 @@
+package u5w2d5.etm.request;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDate;
+
+/**
+ * Corpo del PUT su un viaggio. La capienza cambia solo se il campo è nel JSON:
+ * assente resta com'è, null esplicito rimuove il limite.
+ */
+@Data
+@NoArgsConstructor
+public class TripUpdateRequestDTO {
+
+    @NotNull(message = "Descrizione è obbligatoria")
+    private String description;
+
+    @NotNull(message = "Data di inizio è obbligatoria")
+    private LocalDate startDate;
+
+    @NotNull(message = "Data di fine è obbligatoria")
+    private LocalDate endDate;
+
+    @Min(value = 1, message = "Capienza deve essere un numero positivo")
+    private Integer capacity;
+
+    // Jackson chiama il setter solo per i campi presenti nel JSON
+    @JsonIgnore
+    private boolean capacityProvided;
+
+    public void setCapacity(Integer capacity) {
+        this.capacity = capacity;
+        this.capacityProvided = true;
+    }
+}
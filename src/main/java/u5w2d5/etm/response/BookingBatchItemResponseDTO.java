@@ -0,0 +1,28 @@
+package u5w2d5.etm.response;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookingBatchItemResponseDTO {
+
+    public static final String CREATED = "CREATED";
+    public static final String DUPLICATE = "DUPLICATE";
+    public static final String NOT_FOUND = "NOT_FOUND";
+    public static final String FULL = "FULL";
+    // Il dipendente ha già un viaggio nello stesso periodo
+    public static final String OVERLAP = "OVERLAP";
+    public static final String INVALID = "INVALID";
+
+    // Posizione della prenotazione nella richiesta
+    private int index;
+
+    private String status;
+
+    private Long id;
+
+    private String message;
+}
@@ -0,0 +1,28 @@
+package u5w2d5.etm.response;
+
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ImageUploadJobDTO {
+
+    public enum Status {
+        // In coda sul pool degli upload
+        PENDING,
+        RUNNING,
+        COMPLETED,
+        // Upload non riuscito (error contiene il motivo)
+        FAILED
+    }
+
+    private String id;
+    private Status status;
+    // Valorizzato solo a upload completato
+    private String secureUrl;
+    private String error;
+    private LocalDateTime createdAt;
+    private LocalDateTime completedAt;
+}
@@ -0,0 +1,24 @@
+package u5w2d5.etm.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchResultDTO {
+
+    public enum Type {
+        EMPLOYEE,
+        TRIP
+    }
+
+    private Type type;
+
+    private Long id;
+
+    // Testo da mostrare nell'autocompletamento: "Nome Cognome (username)" per i
+    // dipendenti, la descrizione per i viaggi
+    private String label;
+}
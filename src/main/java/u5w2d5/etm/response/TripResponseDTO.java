@@ -23,5 +23,7 @@ public class TripResponseDTO {
 
     private TripStatus status;
 
+    private Integer capacity;
+
     private List<Long> employeeIds;
 }
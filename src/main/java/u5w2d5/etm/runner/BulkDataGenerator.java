@@ -0,0 +1,416 @@
+package u5w2d5.etm.runner;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.sql.DataSource;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import com.github.javafaker.Faker;
+
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import u5w2d5.etm.model.Employee;
+import u5w2d5.etm.model.TripStatus;
+import u5w2d5.etm.service.EmployeeScheduleIndex;
+import u5w2d5.etm.service.SearchIndex;
+import u5w2d5.etm.service.SeatReservationEngine;
+import u5w2d5.etm.service.TripIntervalIndex;
+
+/**
+ * Genera un volume di dati paragonabile alla produzione e lo carica in Postgres
+ * con il protocollo COPY, al posto di {@link PopulateDB}. Si attiva con il
+ * profilo {@value #PROFILE}.
+ *
+ * Con etm.bulk-data.scale=1 crea 10.000 dipendenti, 2.000 viaggi e
+ * fino a etm.bulk-data.bookings-per-employee prenotazioni per dipendente
+ * (circa 100.000 di default); i volumi crescono linearmente con la scala.
+ *
+ * Funzionamento:
+ * - I dati sono divisi in blocchi da {@value #CHUNK_SIZE} righe, generati e
+ * caricati in parallelo, ognuno sulla propria connessione.
+ * - Ogni blocco ha un Random inizializzato da seed, tabella e numero del blocco:
+ * a parità di seed e di data di riferimento i dati sono sempre gli stessi,
+ * qualunque sia l'ordine di esecuzione dei thread.
+ * - Le righe vengono scritte nello stream COPY man mano che sono generate,
+ * senza tenere in memoria le tabelle intere.
+ * - Prima viaggi e dipendenti, poi le prenotazioni che li referenziano. Tra le
+ * due fasi restano in memoria solo le date dei viaggi (due int per viaggio):
+ * come nell'applicazione ({@link EmployeeScheduleIndex}), i viaggi di uno
+ * stesso dipendente non si sovrappongono.
+ * - Gli id sono assegnati qui, dopo quelli già presenti; alla fine le sequenze
+ * vengono riallineate e le tabelle analizzate.
+ */
+@Order(2)
+@Component
+@Profile(BulkDataGenerator.PROFILE)
+@Slf4j
+@RequiredArgsConstructor
+public class BulkDataGenerator implements CommandLineRunner {
+
+    public static final String PROFILE = "bulk-data";
+
+    private static final int CHUNK_SIZE = 5_000;
+    private static final int EMPLOYEES_PER_SCALE = 10_000;
+    private static final int TRIPS_PER_SCALE = 2_000;
+    // Tentativi per ogni prenotazione da generare: un viaggio che si sovrappone a
+    // quelli già scelti viene scartato
+    private static final int ATTEMPTS_PER_BOOKING = 4;
+    // Dimensione dei pezzi inviati al server durante il COPY
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final DataSource dataSource;
+    private final EntityManagerFactory entityManagerFactory;
+    private final SeatReservationEngine seatReservationEngine;
+    private final SearchIndex searchIndex;
+    private final TripIntervalIndex tripIntervalIndex;
+    private final EmployeeScheduleIndex employeeScheduleIndex;
+
+    @Value("${etm.bulk-data.scale:1}")
+    private double scale;
+
+    @Value("${etm.bulk-data.seed:42}")
+    private long seed;
+
+    @Value("${etm.bulk-data.bookings-per-employee:10}")
+    private int bookingsPerEmployee;
+
+    @Value("${etm.bulk-data.threads:0}")
+    private int threads;
+
+    // Vuota = oggi. Fissandola i dati generati restano identici anche nei giorni
+    // successivi
+    @Value("${etm.bulk-data.reference-date:}")
+    private String referenceDate;
+
+    @Override
+    public void run(String... args) throws Exception {
+        int employees = (int) Math.max(1, Math.round(EMPLOYEES_PER_SCALE * scale));
+        int trips = (int) Math.max(1, Math.round(TRIPS_PER_SCALE * scale));
+        LocalDate today = referenceDate.isBlank() ? LocalDate.now() : LocalDate.parse(referenceDate);
+
+        long tripIdBase;
+        long employeeIdBase;
+        long bookingIdBase;
+        try (Connection connection = dataSource.getConnection()) {
+            if (!connection.isWrapperFor(PGConnection.class)) {
+                throw new IllegalStateException("The " + PROFILE + " profile requires PostgreSQL (COPY protocol)");
+            }
+            tripIdBase = maxId(connection, "trips");
+            employeeIdBase = maxId(connection, "employees");
+            bookingIdBase = maxId(connection, "bookings");
+        }
+
+        log.info("Generazione dati: {} dipendenti, {} viaggi, fino a {} prenotazioni (seed {}, data {})",
+                employees, trips, (long) employees * Math.min(bookingsPerEmployee, trips), seed, today);
+        long start = System.nanoTime();
+
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+        try {
+            AbstractEntityPersister employeePersister = employeePersister();
+            String discriminatorColumn = employeePersister.getDiscriminatorColumnName();
+            String discriminator = String.valueOf(employeePersister.getDiscriminatorValue());
+
+            // Date dei viaggi in giorni dall'epoca, indicizzate come i viaggi generati.
+            // Ogni blocco scrive solo le sue posizioni; le prenotazioni le leggono dopo
+            // l'attesa della prima fase
+            int[] tripStarts = new int[trips];
+            int[] tripEnds = new int[trips];
+            List<Future<Long>> firstPhase = new ArrayList<>();
+            for (int from = 0; from < trips; from += CHUNK_SIZE) {
+                int chunkFrom = from;
+                int chunkTo = Math.min(from + CHUNK_SIZE, trips);
+                firstPhase.add(executor.submit(
+                        () -> copyTrips(tripIdBase, chunkFrom, chunkTo, today, tripStarts, tripEnds)));
+            }
+            for (int from = 0; from < employees; from += CHUNK_SIZE) {
+                int chunkFrom = from;
+                int chunkTo = Math.min(from + CHUNK_SIZE, employees);
+                firstPhase.add(executor.submit(
+                        () -> copyEmployees(employeeIdBase, chunkFrom, chunkTo, discriminatorColumn, discriminator)));
+            }
+            log.info("Caricati {} viaggi e dipendenti", await(firstPhase));
+
+            List<Future<Long>> secondPhase = new ArrayList<>();
+            for (int from = 0; from < employees; from += CHUNK_SIZE) {
+                int chunkFrom = from;
+                int chunkTo = Math.min(from + CHUNK_SIZE, employees);
+                secondPhase.add(executor.submit(() -> copyBookings(bookingIdBase, employeeIdBase, tripIdBase,
+                        chunkFrom, chunkTo, tripStarts, tripEnds, today)));
+            }
+            log.info("Caricate {} prenotazioni", await(secondPhase));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        try (Connection connection = dataSource.getConnection();
+                Statement statement = connection.createStatement()) {
+            // Gli id sono stati scritti esplicitamente: le sequenze devono ripartire
+            // dopo il massimo
+            statement.execute("select setval(pg_get_serial_sequence('trips', 'id'), "
+                    + "(select coalesce(max(id), 1) from trips))");
+            statement.execute("select setval(pg_get_serial_sequence('employees', 'id'), "
+                    + "(select coalesce(max(id), 1) from employees))");
+            // bookings_seq usa l'ottimizzatore pooled di Hibernate (allocationSize 50):
+            // lascio un blocco di margine
+            statement.execute("select setval('bookings_seq', (select coalesce(max(id), 0) from bookings) + 50)");
+            statement.execute("analyze trips");
+            statement.execute("analyze employees");
+            statement.execute("analyze bookings");
+        }
+        seatReservationEngine.rebuild();
+        searchIndex.rebuild();
+        tripIntervalIndex.rebuild();
+        employeeScheduleIndex.rebuild();
+
+        log.info("Dati generati in {} ms", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private long copyTrips(long idBase, int from, int to, LocalDate today, int[] tripStarts, int[] tripEnds)
+            throws SQLException {
+        Random random = chunkRandom("trips", from);
+        Faker faker = new Faker(Locale.ITALIAN, random);
+        try (CopyWriter copy = new CopyWriter(dataSource,
+                "copy trips (id, description, start_date, end_date, status, capacity, version) "
+                        + "from stdin with (format csv)")) {
+            for (int i = from; i < to; i++) {
+                // Viaggi distribuiti su due anni attorno alla data di riferimento
+                LocalDate startDate = today.plusDays(random.nextInt(-365, 366));
+                LocalDate endDate = startDate.plusDays(random.nextInt(1, 15));
+                tripStarts[i] = (int) startDate.toEpochDay();
+                tripEnds[i] = (int) endDate.toEpochDay();
+                copy.value(idBase + i + 1)
+                        .text("Viaggio con destinazione " + faker.country().capital())
+                        .value(startDate)
+                        .value(endDate)
+                        .value(status(random, startDate, endDate, today).ordinal())
+                        // Nessuna capienza: le prenotazioni generate non passano dal motore dei posti
+                        .nullValue()
+                        .value(0)
+                        .endRow();
+            }
+            return copy.finish();
+        }
+    }
+
+    private static TripStatus status(Random random, LocalDate startDate, LocalDate endDate, LocalDate today) {
+        if (random.nextInt(20) == 0) {
+            return TripStatus.CANCELLED;
+        }
+        if (endDate.isBefore(today)) {
+            return TripStatus.COMPLETED;
+        }
+        return startDate.isAfter(today) ? TripStatus.SCHEDULED : TripStatus.IN_PROGRESS;
+    }
+
+    private long copyEmployees(long idBase, int from, int to, String discriminatorColumn, String discriminator)
+            throws SQLException {
+        Random random = chunkRandom("employees", from);
+        Faker faker = new Faker(Locale.ITALIAN, random);
+        // Tabella singola con AppUser: password e password_updated_at restano null
+        // come per ogni Employee, token_version ha un valore anche se non serve
+        try (CopyWriter copy = new CopyWriter(dataSource,
+                "copy employees (id, " + discriminatorColumn + ", username, first_name, last_name, email, version, "
+                        + "token_version) from stdin with (format csv)")) {
+            for (int i = from; i < to; i++) {
+                long id = idBase + i + 1;
+                String firstName = faker.name().firstName();
+                String lastName = faker.name().lastName();
+                // L'id rende unico lo username; stesse regole di Employee.setUsername
+                String username = (firstName + "." + lastName + "." + id).toLowerCase()
+                        .replace(" ", "").replace("'", "");
+                copy.value(id)
+                        .text(discriminator)
+                        .text(username)
+                        .text(firstName)
+                        .text(lastName)
+                        .text(username + "@" + faker.internet().domainName().toLowerCase())
+                        .value(0)
+                        .value(0)
+                        .endRow();
+            }
+            return copy.finish();
+        }
+    }
+
+    private long copyBookings(long idBase, long employeeIdBase, long tripIdBase, int from, int to,
+            int[] tripStarts, int[] tripEnds, LocalDate today) throws SQLException {
+        Random random = chunkRandom("bookings", from);
+        Faker faker = new Faker(Locale.ITALIAN, random);
+        int trips = tripStarts.length;
+        int perEmployee = Math.min(bookingsPerEmployee, trips);
+        List<Integer> booked = new ArrayList<>(perEmployee);
+        try (CopyWriter copy = new CopyWriter(dataSource,
+                "copy bookings (id, employee_id, trip_id, request_date, notes, version) "
+                        + "from stdin with (format csv)")) {
+            for (int i = from; i < to; i++) {
+                // Viaggi senza giorni in comune per dipendente. Un viaggio si sovrappone
+                // a se stesso, quindi (employee_id, trip_id) resta unico. Se i tentativi
+                // finiscono il dipendente ha meno prenotazioni
+                booked.clear();
+                for (int attempt = 0; attempt < perEmployee * ATTEMPTS_PER_BOOKING
+                        && booked.size() < perEmployee; attempt++) {
+                    int candidate = random.nextInt(trips);
+                    if (!overlapsAny(candidate, booked, tripStarts, tripEnds)) {
+                        booked.add(candidate);
+                    }
+                }
+                // Id per posizione: con meno prenotazioni restano dei buchi, mai doppioni
+                int n = 0;
+                for (int trip : booked) {
+                    LocalDateTime requestDate = today.minusDays(random.nextInt(0, 400))
+                            .atTime(random.nextInt(8, 19), random.nextInt(60));
+                    copy.value(idBase + (long) i * perEmployee + n + 1)
+                            .value(employeeIdBase + i + 1)
+                            .value(tripIdBase + trip + 1)
+                            .value(requestDate)
+                            .text(faker.lorem().sentence())
+                            .value(0)
+                            .endRow();
+                    n++;
+                }
+            }
+            return copy.finish();
+        }
+    }
+
+    private static boolean overlapsAny(int trip, List<Integer> booked, int[] tripStarts, int[] tripEnds) {
+        for (int other : booked) {
+            if (tripStarts[other] <= tripEnds[trip] && tripStarts[trip] <= tripEnds[other]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Random chunkRandom(String table, int chunkFrom) {
+        return new Random(seed * 31 * 31 + table.hashCode() * 31L + chunkFrom);
+    }
+
+    // Colonna e valore del discriminatore di Employee li decide Hibernate: li
+    // leggo dal metamodello invece di ripeterli qui
+    private AbstractEntityPersister employeePersister() {
+        return (AbstractEntityPersister) entityManagerFactory
+                .unwrap(SessionFactoryImplementor.class)
+                .getMappingMetamodel()
+                .getEntityDescriptor(Employee.class);
+    }
+
+    private static long maxId(Connection connection, String table) throws SQLException {
+        try (Statement statement = connection.createStatement();
+                var resultSet = statement.executeQuery("select coalesce(max(id), 0) from " + table)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    private static long await(List<Future<Long>> futures) throws Exception {
+        long rows = 0;
+        for (Future<Long> future : futures) {
+            rows += future.get();
+        }
+        return rows;
+    }
+
+    /**
+     * Scrive righe CSV in un COPY ... FROM STDIN, inviandole al server a blocchi
+     * di {@value BulkDataGenerator#COPY_BUFFER_SIZE} caratteri. Ogni istanza usa
+     * una propria connessione in autocommit: il blocco è visibile alle altre
+     * connessioni appena il COPY termina.
+     */
+    private static class CopyWriter implements AutoCloseable {
+
+        private final Connection connection;
+        private final CopyIn copyIn;
+        private final StringBuilder buffer = new StringBuilder(COPY_BUFFER_SIZE + 1024);
+        private boolean firstValue = true;
+
+        CopyWriter(DataSource dataSource, String sql) throws SQLException {
+            this.connection = dataSource.getConnection();
+            try {
+                this.copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(sql);
+            } catch (SQLException e) {
+                connection.close();
+                throw e;
+            }
+        }
+
+        CopyWriter value(Object value) {
+            separator();
+            buffer.append(value);
+            return this;
+        }
+
+        // Testo sempre tra virgolette: nomi e frasi possono contenere virgole e apici
+        CopyWriter text(String value) {
+            separator();
+            buffer.append('"').append(value.replace("\"", "\"\"")).append('"');
+            return this;
+        }
+
+        // In CSV un campo vuoto senza virgolette è NULL
+        CopyWriter nullValue() {
+            separator();
+            return this;
+        }
+
+        void endRow() throws SQLException {
+            buffer.append('\n');
+            firstValue = true;
+            if (buffer.length() >= COPY_BUFFER_SIZE) {
+                flush();
+            }
+        }
+
+        long finish() throws SQLException {
+            flush();
+            return copyIn.endCopy();
+        }
+
+        private void separator() {
+            if (!firstValue) {
+                buffer.append(',');
+            }
+            firstValue = false;
+        }
+
+        private void flush() throws SQLException {
+            byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+            copyIn.writeToCopy(bytes, 0, bytes.length);
+            buffer.setLength(0);
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+            } finally {
+                connection.close();
+            }
+        }
+    }
+}
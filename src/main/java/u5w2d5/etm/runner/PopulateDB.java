@@ -1,6 +1,7 @@
 package u5w2d5.etm.runner;
 
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 import java.time.LocalDate;
@@ -10,12 +11,14 @@ import com.github.javafaker.Faker;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import u5w2d5.etm.exception.ConflictException;
 import u5w2d5.etm.model.*;
 import u5w2d5.etm.request.TripRequestDTO;
 import u5w2d5.etm.service.*;
 
 @Order(2)
 @Component
+@Profile("!" + BulkDataGenerator.PROFILE)
 @Slf4j
 @RequiredArgsConstructor
 public class PopulateDB implements CommandLineRunner {
@@ -92,8 +95,9 @@ public class PopulateDB implements CommandLineRunner {
         log.info("Created trips");
 
         log.info("Creating Bookings...");
+        // Il numero di dipendenti non cambia durante il ciclo: lo conto una volta sola
+        int employeeCount = (int) employeeService.count();
         for (int i = 0; i < 80; i++) {
-            int employeeCount = employeeService.getAll().size();
             Employee employee = employeeService.getEmployeeById((long) faker.number().numberBetween(1, employeeCount));
             Trip trip = tripService.getTripById((long) faker.number().numberBetween(1, 15));
 
@@ -111,6 +115,10 @@ public class PopulateDB implements CommandLineRunner {
                 log.error("Booking already exists (employee -> trip): "
                         + booking.getEmployee().getId() + " -> "
                         + booking.getTrip().getId());
+            } catch (ConflictException e) {
+                log.error("Booking rejected (employee -> trip): "
+                        + booking.getEmployee().getId() + " -> "
+                        + booking.getTrip().getId() + ": " + e.getMessage());
             } catch (EntityNotFoundException e) {
                 log.error("Employee or Trip not found");
             } catch (Exception e) {
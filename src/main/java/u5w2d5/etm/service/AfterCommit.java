@@ -0,0 +1,31 @@
+package u5w2d5.etm.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Aggiornamenti delle strutture in memoria legati al commit della transazione
+ * corrente.
+ *
+ * L'azione viene eseguita solo dopo un commit riuscito, così un rollback non
+ * lascia indici e contatori disallineati dal database. Senza una transazione
+ * attiva (rebuild, job, test) l'azione viene eseguita subito.
+ */
+final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    static void run(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -1,22 +1,48 @@
 package u5w2d5.etm.service;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
-import org.springframework.beans.BeanUtils;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Service;
 import org.springframework.validation.annotation.Validated;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import u5w2d5.etm.exception.ConflictException;
+import u5w2d5.etm.mapper.BookingMapper;
 import u5w2d5.etm.model.Booking;
 import u5w2d5.etm.model.Employee;
 import u5w2d5.etm.model.Trip;
 import u5w2d5.etm.repository.*;
+import u5w2d5.etm.repository.projection.EmployeeTripId;
+import u5w2d5.etm.repository.projection.TripInterval;
 import u5w2d5.etm.request.BookingRequestDTO;
+import u5w2d5.etm.response.BookingBatchItemResponseDTO;
 import u5w2d5.etm.response.BookingResponseDTO;
 import u5w2d5.etm.response.IdResponse;
+import u5w2d5.etm.service.EmployeeScheduleIndex.Reservation;
 
 @Service
 @RequiredArgsConstructor
@@ -24,22 +50,137 @@ import u5w2d5.etm.response.IdResponse;
 @Validated
 public class BookingService {
 
+    public static final int MAX_BATCH_SIZE = 1000;
+
     private final BookingRepository bookingRepository;
+    private final EmployeeRepository employeeRepository;
+    private final TripRepository tripRepository;
     private final EmployeeService employeeService;
     private final TripService tripService;
+    private final SeatReservationEngine seatReservationEngine;
+    private final EmployeeScheduleIndex employeeScheduleIndex;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final BookingMapper bookingMapper;
+
+    // Quante righe il driver porta in memoria per ogni round-trip del cursore
+    @Value("${etm.export.fetch-size:1000}")
+    private int exportFetchSize;
+
+    // Durata massima di un export: il cursore tiene aperte transazione e
+    // connessione (e con il bulkhead un permesso) finché il client legge
+    @Value("${etm.export.max-duration:5m}")
+    private Duration exportMaxDuration;
+
+    private static final String EXPORT_QUERY = "SELECT id, trip_id, employee_id, request_date, notes "
+            + "FROM bookings ORDER BY id";
+
+    public enum ExportFormat {
+        NDJSON("application/x-ndjson"),
+        CSV("text/csv");
+
+        private final String contentType;
+
+        ExportFormat(String contentType) {
+            this.contentType = contentType;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public static ExportFormat fromString(String format) {
+            for (ExportFormat exportFormat : values()) {
+                if (exportFormat.name().equalsIgnoreCase(format)) {
+                    return exportFormat;
+                }
+            }
+            throw new IllegalArgumentException("Unknown export format: " + format);
+        }
+    }
 
     public List<Booking> getAllBookings() {
         return bookingRepository.findAll();
     }
 
     public List<BookingResponseDTO> getAllBookingsDTO() {
-        List<BookingResponseDTO> bookingDTOs = new ArrayList<>();
-        for (Booking booking : bookingRepository.findAll()) {
-            BookingResponseDTO bookingDTO = new BookingResponseDTO();
-            BeanUtils.copyProperties(booking, bookingDTO);
-            bookingDTOs.add(bookingDTO);
+        return bookingRepository.findAllAsResponse();
+    }
+
+    /**
+     * Scrive tutte le prenotazioni sullo stream indicato, una riga alla volta.
+     * Le righe arrivano da un cursore JDBC forward-only (dentro la transazione
+     * del service, così PostgreSQL rispetta il fetch size) e non vengono mai
+     * accumulate in memoria né trasformate in entità.
+     *
+     * Un client lento tiene occupata la connessione per tutto l'export: oltre
+     * etm.export.max-duration la query viene interrotta (timeout dello statement)
+     * o il cursore viene chiuso tra una riga e l'altra, e la risposta resta
+     * troncata.
+     */
+    public void exportBookings(ExportFormat format, OutputStream outputStream) throws IOException {
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+
+        if (format == ExportFormat.CSV) {
+            writer.write("id,tripId,employeeId,requestDate,notes\n");
         }
-        return bookingDTOs;
+
+        long deadline = System.nanoTime() + exportMaxDuration.toNanos();
+        jdbcTemplate.query(connection -> {
+            var statement = connection.prepareStatement(EXPORT_QUERY,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(exportFetchSize);
+            statement.setQueryTimeout((int) Math.max(1, exportMaxDuration.toSeconds()));
+            return statement;
+        }, (RowCallbackHandler) rs -> {
+            if (System.nanoTime() > deadline) {
+                throw new QueryTimeoutException("Booking export exceeded " + exportMaxDuration);
+            }
+            Timestamp requestDate = rs.getTimestamp("request_date");
+            BookingResponseDTO row = new BookingResponseDTO(
+                    rs.getLong("id"),
+                    rs.getObject("trip_id", Long.class),
+                    rs.getObject("employee_id", Long.class),
+                    requestDate == null ? null : requestDate.toLocalDateTime(),
+                    rs.getString("notes"));
+            try {
+                if (format == ExportFormat.NDJSON) {
+                    writer.write(objectMapper.writeValueAsString(row));
+                    writer.write('\n');
+                } else {
+                    writeCsvRow(writer, row);
+                }
+            } catch (IOException e) {
+                // Il client ha chiuso la connessione: interrompe il cursore
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        writer.flush();
+    }
+
+    private static void writeCsvRow(BufferedWriter writer, BookingResponseDTO row) throws IOException {
+        writer.write(String.valueOf(row.getId()));
+        writer.write(',');
+        writer.write(row.getTripId() == null ? "" : row.getTripId().toString());
+        writer.write(',');
+        writer.write(row.getEmployeeId() == null ? "" : row.getEmployeeId().toString());
+        writer.write(',');
+        writer.write(row.getRequestDate() == null ? "" : row.getRequestDate().toString());
+        writer.write(',');
+        writer.write(csvEscape(row.getNotes()));
+        writer.write('\n');
+    }
+
+    private static String csvEscape(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+                && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
     }
 
     public Booking getBookingById(long id) {
@@ -47,12 +188,20 @@ public class BookingService {
                 .orElseThrow(() -> new EntityNotFoundException("Booking not found with id: " + id));
     }
 
+    public String getAllBookingsETag() {
+        return "bookings-" + bookingRepository.findVersionStamp().asTag();
+    }
+
+    public String getBookingETag(long id) {
+        Long version = bookingRepository.findVersionById(id)
+                .orElseThrow(() -> new EntityNotFoundException("Booking not found with id: " + id));
+        return "booking-" + id + "." + version;
+    }
+
     public BookingResponseDTO getBookingByIdDTO(long id) {
         Booking booking = bookingRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException("Booking not found with id: " + id));
-        BookingResponseDTO bookingDTO = new BookingResponseDTO();
-        BeanUtils.copyProperties(booking, bookingDTO);
-        return bookingDTO;
+        return bookingMapper.toResponse(booking);
     }
 
     public IdResponse createBooking(BookingRequestDTO bookingRequestDTO) {
@@ -60,27 +209,204 @@ public class BookingService {
         Employee employee = employeeService.getEmployeeById(bookingRequestDTO.getEmployeeId());
         Trip trip = tripService.getTripById(bookingRequestDTO.getTripId());
 
-        if (bookingRepository.existsByEmployeeAndTrip(employee, trip)) {
-            throw new IllegalArgumentException("The employee has already booked this trip.");
-        }
+        employeeScheduleIndex.reserve(employee.getId(), trip);
+        seatReservationEngine.reserve(trip.getId());
 
-        Booking booking = new Booking();
-        BeanUtils.copyProperties(bookingRequestDTO, booking);
+        Booking booking = bookingMapper.toEntity(bookingRequestDTO);
         booking.setEmployee(employee);
         booking.setTrip(trip);
-        return new IdResponse(bookingRepository.save(booking).getId());
+        return new IdResponse(insertBooking(booking).getId());
+    }
+
+    /**
+     * Crea in un colpo solo fino a {@value #MAX_BATCH_SIZE} prenotazioni.
+     *
+     * Indipendentemente dalla dimensione del batch: una query per i dipendenti
+     * esistenti, una per i viaggi (con le date, per il controllo delle
+     * sovrapposizioni in memoria), una per le coppie già prenotate e poi insert
+     * raggruppati in batch JDBC. Le prenotazioni non valide non bloccano le
+     * altre: l'esito di ognuna è riportato nella risposta, nello stesso ordine
+     * della richiesta.
+     */
+    public List<BookingBatchItemResponseDTO> createBookings(List<BookingRequestDTO> bookingRequests) {
+        if (bookingRequests.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("A batch can contain at most " + MAX_BATCH_SIZE + " bookings");
+        }
+
+        Set<Long> employeeIds = new HashSet<>();
+        Set<Long> tripIds = new HashSet<>();
+        for (BookingRequestDTO request : bookingRequests) {
+            if (isComplete(request)) {
+                employeeIds.add(request.getEmployeeId());
+                tripIds.add(request.getTripId());
+            }
+        }
+
+        Set<Long> existingEmployees = employeeIds.isEmpty() ? Set.of()
+                : employeeRepository.findExistingIds(employeeIds);
+        Map<Long, TripInterval> existingTrips = new HashMap<>();
+        if (!tripIds.isEmpty()) {
+            for (TripInterval trip : tripRepository.findIntervalsByIds(tripIds)) {
+                existingTrips.put(trip.getId(), trip);
+            }
+        }
+        Set<String> bookedPairs = new HashSet<>();
+        if (!existingEmployees.isEmpty() && !existingTrips.isEmpty()) {
+            for (EmployeeTripId pair : bookingRepository.findExistingPairs(existingEmployees,
+                    existingTrips.keySet())) {
+                bookedPairs.add(pair.getEmployeeId() + ":" + pair.getTripId());
+            }
+        }
+
+        List<BookingBatchItemResponseDTO> results = new ArrayList<>();
+        List<Booking> bookings = new ArrayList<>();
+        List<BookingBatchItemResponseDTO> created = new ArrayList<>();
+        for (int i = 0; i < bookingRequests.size(); i++) {
+            BookingRequestDTO request = bookingRequests.get(i);
+            BookingBatchItemResponseDTO result = new BookingBatchItemResponseDTO(i, null, null, null);
+            results.add(result);
+
+            if (!isComplete(request)) {
+                result.setStatus(BookingBatchItemResponseDTO.INVALID);
+                result.setMessage("Employee and trip are required and must be positive ids");
+            } else if (!existingEmployees.contains(request.getEmployeeId())) {
+                result.setStatus(BookingBatchItemResponseDTO.NOT_FOUND);
+                result.setMessage("Employee not found with id: " + request.getEmployeeId());
+            } else if (!existingTrips.containsKey(request.getTripId())) {
+                result.setStatus(BookingBatchItemResponseDTO.NOT_FOUND);
+                result.setMessage("Trip not found with id: " + request.getTripId());
+            } else if (!bookedPairs.add(request.getEmployeeId() + ":" + request.getTripId())) {
+                // Già presente nel database o ripetuta nello stesso batch
+                result.setStatus(BookingBatchItemResponseDTO.DUPLICATE);
+                result.setMessage("The employee has already booked this trip.");
+            } else if (!tryReserveSchedule(request.getEmployeeId(), existingTrips.get(request.getTripId()),
+                    result)) {
+                // DUPLICATE o OVERLAP, con il messaggio: li imposta tryReserveSchedule
+            } else if (!tryReserveSeat(request.getTripId())) {
+                // Il periodo preso sopra non serve più e la transazione non viene annullata
+                employeeScheduleIndex.release(request.getEmployeeId(), request.getTripId());
+                result.setStatus(BookingBatchItemResponseDTO.FULL);
+                result.setMessage("The trip is fully booked.");
+            } else {
+                employeeScheduleIndex.releaseOnRollback(request.getEmployeeId(), request.getTripId());
+                Booking booking = new Booking();
+                // Riferimenti senza SELECT: l'esistenza è già stata verificata sopra
+                booking.setEmployee(employeeRepository.getReferenceById(request.getEmployeeId()));
+                booking.setTrip(tripRepository.getReferenceById(request.getTripId()));
+                if (request.getRequestDate() != null) {
+                    booking.setRequestDate(request.getRequestDate());
+                }
+                booking.setNotes(request.getNotes());
+                bookings.add(booking);
+                created.add(result);
+            }
+        }
+
+        // Una richiesta concorrente può aver prenotato la stessa coppia dopo il
+        // controllo: il vincolo unico la rifiuta e l'intero batch viene annullato
+        try {
+            bookingRepository.saveAll(bookings);
+            bookingRepository.flush();
+        } catch (DataIntegrityViolationException e) {
+            throw translateDuplicate(e);
+        }
+        for (int i = 0; i < bookings.size(); i++) {
+            created.get(i).setStatus(BookingBatchItemResponseDTO.CREATED);
+            created.get(i).setId(bookings.get(i).getId());
+        }
+        return results;
+    }
+
+    private static boolean isComplete(BookingRequestDTO request) {
+        return request != null
+                && request.getEmployeeId() != null && request.getEmployeeId() > 0
+                && request.getTripId() != null && request.getTripId() > 0;
+    }
+
+    private boolean tryReserveSchedule(Long employeeId, TripInterval trip, BookingBatchItemResponseDTO result) {
+        Reservation reservation = employeeScheduleIndex.tryReserve(employeeId, trip.getId(), trip.getStartDate(),
+                trip.getEndDate(), null);
+        switch (reservation.outcome()) {
+            case DUPLICATE -> {
+                // Prenotata da una richiesta concorrente dopo il controllo sul database
+                result.setStatus(BookingBatchItemResponseDTO.DUPLICATE);
+                result.setMessage("The employee has already booked this trip.");
+                return false;
+            }
+            case OVERLAP -> {
+                result.setStatus(BookingBatchItemResponseDTO.OVERLAP);
+                result.setMessage("The employee is already booked on trip " + reservation.overlappingTripId()
+                        + " in the same period.");
+                return false;
+            }
+            default -> {
+                return true;
+            }
+        }
+    }
+
+    private boolean tryReserveSeat(Long tripId) {
+        try {
+            seatReservationEngine.reserve(tripId);
+            return true;
+        } catch (ConflictException e) {
+            return false;
+        }
     }
 
     public IdResponse createBooking(Booking booking) {
+        employeeScheduleIndex.reserve(booking.getEmployee().getId(), booking.getTrip());
+        seatReservationEngine.reserve(booking.getTrip().getId());
+        return new IdResponse(insertBooking(booking).getId());
+    }
+
+    /**
+     * Inserisce la prenotazione affidandosi al vincolo unico (employee_id,
+     * trip_id): niente controllo preventivo, quindi una query in meno e nessuna
+     * finestra in cui due richieste concorrenti possano passare entrambe.
+     */
+    private Booking insertBooking(Booking booking) {
+        try {
+            return bookingRepository.saveAndFlush(booking);
+        } catch (DataIntegrityViolationException e) {
+            throw translateDuplicate(e);
+        }
+    }
 
-        if (bookingRepository.existsByEmployeeAndTrip(booking.getEmployee(), booking.getTrip())) {
-            throw new IllegalArgumentException("The employee has already booked this trip.");
+    private static RuntimeException translateDuplicate(DataIntegrityViolationException e) {
+        String constraintName = e.getCause() instanceof ConstraintViolationException violation
+                ? violation.getConstraintName()
+                : null;
+        String violated = constraintName != null ? constraintName : e.getMostSpecificCause().getMessage();
+        if (violated != null && violated.toLowerCase().contains(Booking.UNIQUE_EMPLOYEE_TRIP)) {
+            return new IllegalArgumentException("The employee has already booked this trip.");
         }
-        return new IdResponse(bookingRepository.save(booking).getId());
+        return e;
     }
 
     public Booking updateBooking(long id, Booking updatedBooking) {
         Booking booking = getBookingById(id);
+        Long previousEmployeeId = booking.getEmployee() != null ? booking.getEmployee().getId() : null;
+        Long previousTripId = booking.getTrip() != null ? booking.getTrip().getId() : null;
+        Long employeeId = updatedBooking.getEmployee() != null ? updatedBooking.getEmployee().getId() : null;
+        Long tripId = updatedBooking.getTrip() != null ? updatedBooking.getTrip().getId() : null;
+        if (employeeId != null && tripId != null
+                && (!employeeId.equals(previousEmployeeId) || !tripId.equals(previousTripId))) {
+            // Le date del viaggio dal database, non dal corpo della richiesta. Per lo
+            // stesso dipendente il viaggio sostituito non conta come sovrapposizione
+            Trip trip = tripService.getTripById(tripId);
+            employeeScheduleIndex.reserve(employeeId, tripId, trip.getStartDate(), trip.getEndDate(),
+                    employeeId.equals(previousEmployeeId) ? previousTripId : null);
+            if (previousEmployeeId != null && previousTripId != null) {
+                employeeScheduleIndex.releaseAfterCommit(previousEmployeeId, previousTripId);
+            }
+        }
+        if (updatedBooking.getTrip() != null && booking.getTrip() != null
+                && !updatedBooking.getTrip().getId().equals(booking.getTrip().getId())) {
+            // Cambio di viaggio: un posto sul nuovo, quello vecchio si libera al commit
+            seatReservationEngine.reserve(updatedBooking.getTrip().getId());
+            seatReservationEngine.releaseAfterCommit(booking.getTrip().getId());
+        }
         booking.setTrip(updatedBooking.getTrip());
         booking.setEmployee(updatedBooking.getEmployee());
         booking.setRequestDate(updatedBooking.getRequestDate());
@@ -91,5 +417,11 @@ public class BookingService {
     public void deleteBooking(long id) {
         Booking booking = getBookingById(id);
         bookingRepository.delete(booking);
+        if (booking.getTrip() != null) {
+            seatReservationEngine.releaseAfterCommit(booking.getTrip().getId());
+            if (booking.getEmployee() != null) {
+                employeeScheduleIndex.releaseAfterCommit(booking.getEmployee().getId(), booking.getTrip().getId());
+            }
+        }
     }
 }
@@ -0,0 +1,26 @@
+package u5w2d5.etm.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import org.springframework.stereotype.Component;
+
+import com.cloudinary.Cloudinary;
+
+import lombok.RequiredArgsConstructor;
+
+@Component
+@RequiredArgsConstructor
+public class CloudinaryImageUploader implements ImageUploader {
+
+    private final Cloudinary cloudinary;
+
+    // Con un File l'SDK invia il contenuto in streaming dal disco, senza
+    // caricarlo tutto in memoria come con un byte[]
+    @Override
+    public String upload(File file, String publicId) throws IOException {
+        Map<?, ?> result = cloudinary.uploader().upload(file, Map.of("public_id", publicId));
+        return result.get("secure_url").toString();
+    }
+}
@@ -0,0 +1,379 @@
+package u5w2d5.etm.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import u5w2d5.etm.exception.ConflictException;
+import u5w2d5.etm.model.Trip;
+import u5w2d5.etm.repository.BookingRepository;
+import u5w2d5.etm.repository.projection.BookingInterval;
+
+/**
+ * Periodi prenotati da ogni dipendente, tenuti in memoria per rifiutare le
+ * prenotazioni su viaggi che si sovrappongono senza una query di intervallo
+ * per ogni scrittura.
+ *
+ * Funzionamento:
+ * - Per ogni dipendente i periodi sono in array ordinati per data di inizio,
+ * con la data di fine massima fino a ogni posizione: la ricerca binaria trova
+ * l'ultimo periodo che inizia entro la fine di quello nuovo e risale solo
+ * finché qualche periodo precedente può ancora sovrapporsi.
+ * - Gli array non vengono mai modificati: ogni cambiamento ne crea di nuovi e
+ * li pubblica con un'operazione atomica sulla mappa. Un dipendente ha poche
+ * decine di viaggi, quindi la copia costa meno di un albero.
+ * - Come i posti di {@link SeatReservationEngine}, il periodo viene preso
+ * durante la transazione che crea la prenotazione (così due richieste
+ * concorrenti non passano entrambe) e restituito se la transazione non arriva
+ * al commit.
+ * - All'avvio l'indice viene costruito da bookings e trips; i service lo
+ * aggiornano quando cambiano prenotazioni, date dei viaggi o dipendenti. Le
+ * sovrapposizioni già presenti nei dati restano e bloccano solo le nuove
+ * prenotazioni.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class EmployeeScheduleIndex implements SmartInitializingSingleton {
+
+    private final BookingRepository bookingRepository;
+
+    private final Map<Long, Schedule> schedules = new ConcurrentHashMap<>();
+    // Dipendenti prenotati su ogni viaggio, per spostarne i periodi quando
+    // cambiano le date
+    private final Map<Long, Set<Long>> travellers = new ConcurrentHashMap<>();
+
+    /**
+     * Esito di {@link EmployeeScheduleIndex#tryReserve}.
+     *
+     * @param overlappingTripId viaggio già prenotato che si sovrappone, solo per
+     *                          OVERLAP
+     */
+    public record Reservation(Outcome outcome, Long overlappingTripId) {
+
+        public enum Outcome {
+            OK, DUPLICATE, OVERLAP
+        }
+
+        static final Reservation OK = new Reservation(Outcome.OK, null);
+        static final Reservation DUPLICATE = new Reservation(Outcome.DUPLICATE, null);
+
+        static Reservation overlap(long tripId) {
+            return new Reservation(Outcome.OVERLAP, tripId);
+        }
+    }
+
+    private static final class Schedule {
+
+        final long[] tripIds;
+        final long[] starts;
+        final long[] ends;
+        // Fine massima dei periodi da 0 a i: non decresce mai
+        final long[] maxEnds;
+
+        Schedule(long[] tripIds, long[] starts, long[] ends) {
+            this.tripIds = tripIds;
+            this.starts = starts;
+            this.ends = ends;
+            this.maxEnds = new long[ends.length];
+            long max = Long.MIN_VALUE;
+            for (int i = 0; i < ends.length; i++) {
+                max = Math.max(max, ends[i]);
+                maxEnds[i] = max;
+            }
+        }
+
+        int size() {
+            return tripIds.length;
+        }
+
+        int indexOf(long tripId) {
+            for (int i = 0; i < tripIds.length; i++) {
+                if (tripIds[i] == tripId) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @return l'id del primo viaggio trovato che ha almeno un giorno in comune
+         *         con [start, end], o null
+         */
+        Long findOverlap(long start, long end, long ignoredTripId) {
+            // Ultimo periodo che inizia entro "end": quelli dopo non possono sovrapporsi
+            int low = 0;
+            int high = starts.length - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (starts[middle] <= end) {
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            for (int i = high; i >= 0 && maxEnds[i] >= start; i--) {
+                if (ends[i] >= start && tripIds[i] != ignoredTripId) {
+                    return tripIds[i];
+                }
+            }
+            return null;
+        }
+
+        Schedule with(long tripId, long start, long end) {
+            Schedule base = without(tripId);
+            int size = base.size();
+            int position = 0;
+            while (position < size && (base.starts[position] < start
+                    || (base.starts[position] == start && base.tripIds[position] < tripId))) {
+                position++;
+            }
+            return new Schedule(insert(base.tripIds, position, tripId), insert(base.starts, position, start),
+                    insert(base.ends, position, end));
+        }
+
+        Schedule without(long tripId) {
+            int position = indexOf(tripId);
+            if (position < 0) {
+                return this;
+            }
+            return new Schedule(delete(tripIds, position), delete(starts, position), delete(ends, position));
+        }
+
+        private static long[] insert(long[] values, int position, long value) {
+            long[] result = new long[values.length + 1];
+            System.arraycopy(values, 0, result, 0, position);
+            result[position] = value;
+            System.arraycopy(values, position, result, position + 1, values.length - position);
+            return result;
+        }
+
+        private static long[] delete(long[] values, int position) {
+            long[] result = new long[values.length - 1];
+            System.arraycopy(values, 0, result, 0, position);
+            System.arraycopy(values, position + 1, result, position, values.length - position - 1);
+            return result;
+        }
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        rebuild();
+    }
+
+    // Durante la ricostruzione i controlli possono non vedere alcuni periodi:
+    // succede solo all'avvio o dopo un caricamento massivo
+    public synchronized void rebuild() {
+        schedules.clear();
+        travellers.clear();
+        List<BookingInterval> employeeBookings = new ArrayList<>();
+        // Le righe arrivano già ordinate per dipendente e data di inizio
+        for (BookingInterval booking : bookingRepository.findAllIntervals()) {
+            if (!employeeBookings.isEmpty()
+                    && !employeeBookings.get(0).getEmployeeId().equals(booking.getEmployeeId())) {
+                addAll(employeeBookings);
+                employeeBookings.clear();
+            }
+            employeeBookings.add(booking);
+        }
+        if (!employeeBookings.isEmpty()) {
+            addAll(employeeBookings);
+        }
+        log.info("Periodi prenotati ricostruiti per {} dipendenti", schedules.size());
+    }
+
+    private void addAll(List<BookingInterval> bookings) {
+        long[] tripIds = new long[bookings.size()];
+        long[] starts = new long[bookings.size()];
+        long[] ends = new long[bookings.size()];
+        for (int i = 0; i < bookings.size(); i++) {
+            BookingInterval booking = bookings.get(i);
+            tripIds[i] = booking.getTripId();
+            starts[i] = booking.getStartDate().toEpochDay();
+            ends[i] = booking.getEndDate().toEpochDay();
+        }
+        Long employeeId = bookings.get(0).getEmployeeId();
+        schedules.put(employeeId, new Schedule(tripIds, starts, ends));
+        for (long tripId : tripIds) {
+            addTraveller(tripId, employeeId);
+        }
+    }
+
+    /**
+     * Id di un viaggio prenotato dal dipendente che ha almeno un giorno in comune
+     * con [startDate, endDate], o null se non ce ne sono.
+     */
+    public Long findOverlap(Long employeeId, LocalDate startDate, LocalDate endDate) {
+        Schedule schedule = schedules.get(employeeId);
+        return schedule == null ? null
+                : schedule.findOverlap(startDate.toEpochDay(), endDate.toEpochDay(), -1);
+    }
+
+    public int size(Long employeeId) {
+        Schedule schedule = schedules.get(employeeId);
+        return schedule == null ? 0 : schedule.size();
+    }
+
+    /**
+     * Prova a inserire il periodo del viaggio tra quelli del dipendente. Il
+     * controllo e l'inserimento sono un'unica operazione atomica.
+     *
+     * @param replacedTripId viaggio che la prenotazione sostituisce, escluso dal
+     *                       controllo (può essere null)
+     * @return OK se il periodo è stato inserito, DUPLICATE se il dipendente ha
+     *         già il viaggio (anche da una transazione non ancora conclusa),
+     *         OVERLAP con l'id del viaggio che si sovrappone. Solo con OK il
+     *         periodo va poi restituito
+     */
+    public Reservation tryReserve(Long employeeId, Long tripId, LocalDate startDate, LocalDate endDate,
+            Long replacedTripId) {
+        long start = startDate.toEpochDay();
+        long end = endDate.toEpochDay();
+        long ignoredTripId = replacedTripId == null ? -1 : replacedTripId;
+        Reservation[] reservation = { Reservation.OK };
+        schedules.compute(employeeId, (id, schedule) -> {
+            if (schedule == null) {
+                return new Schedule(new long[] { tripId }, new long[] { start }, new long[] { end });
+            }
+            if (schedule.indexOf(tripId) >= 0) {
+                reservation[0] = Reservation.DUPLICATE;
+                return schedule;
+            }
+            Long overlapping = schedule.findOverlap(start, end, ignoredTripId);
+            if (overlapping != null) {
+                reservation[0] = Reservation.overlap(overlapping);
+                return schedule;
+            }
+            return schedule.with(tripId, start, end);
+        });
+        if (reservation[0] == Reservation.OK) {
+            addTraveller(tripId, employeeId);
+        }
+        return reservation[0];
+    }
+
+    /**
+     * Prende il periodo per la transazione corrente e lo restituisce se la
+     * transazione non arriva al commit.
+     *
+     * @throws IllegalArgumentException se il dipendente ha già prenotato il
+     *                                  viaggio (stesso messaggio del vincolo unico)
+     * @throws ConflictException        se il dipendente ha già un viaggio nello
+     *                                  stesso periodo
+     */
+    public void reserve(Long employeeId, Long tripId, LocalDate startDate, LocalDate endDate,
+            Long replacedTripId) {
+        Reservation reservation = tryReserve(employeeId, tripId, startDate, endDate, replacedTripId);
+        switch (reservation.outcome()) {
+            case DUPLICATE -> throw new IllegalArgumentException("The employee has already booked this trip.");
+            case OVERLAP -> throw new ConflictException("The employee is already booked on trip "
+                    + reservation.overlappingTripId() + " in the same period.");
+            case OK -> releaseOnRollback(employeeId, tripId);
+        }
+    }
+
+    public void reserve(Long employeeId, Trip trip) {
+        reserve(employeeId, trip.getId(), trip.getStartDate(), trip.getEndDate(), null);
+    }
+
+    public void releaseOnRollback(Long employeeId, Long tripId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        release(employeeId, tripId);
+                    }
+                }
+            });
+        }
+    }
+
+    public void release(Long employeeId, Long tripId) {
+        schedules.computeIfPresent(employeeId, (id, schedule) -> {
+            Schedule remaining = schedule.without(tripId);
+            return remaining.size() == 0 ? null : remaining;
+        });
+        removeTraveller(tripId, employeeId);
+    }
+
+    // Il periodo torna libero solo quando la cancellazione è definitiva
+    public void releaseAfterCommit(Long employeeId, Long tripId) {
+        AfterCommit.run(() -> release(employeeId, tripId));
+    }
+
+    /**
+     * Sposta il periodo del viaggio per tutti i dipendenti che lo hanno
+     * prenotato. Il cambio di date non viene rifiutato: le sovrapposizioni che
+     * crea bloccano solo le prenotazioni successive.
+     */
+    public void moveTripAfterCommit(Trip trip) {
+        Long tripId = trip.getId();
+        long start = trip.getStartDate().toEpochDay();
+        long end = trip.getEndDate().toEpochDay();
+        AfterCommit.run(() -> {
+            for (Long employeeId : travellers.getOrDefault(tripId, Set.of())) {
+                schedules.computeIfPresent(employeeId, (id, schedule) -> {
+                    int position = schedule.indexOf(tripId);
+                    if (position < 0 || (schedule.starts[position] == start && schedule.ends[position] == end)) {
+                        return schedule;
+                    }
+                    return schedule.with(tripId, start, end);
+                });
+            }
+        });
+    }
+
+    // Le prenotazioni del viaggio vengono cancellate in cascata
+    public void removeTripAfterCommit(Long tripId) {
+        AfterCommit.run(() -> {
+            Set<Long> employeeIds = travellers.remove(tripId);
+            if (employeeIds == null) {
+                return;
+            }
+            for (Long employeeId : employeeIds) {
+                schedules.computeIfPresent(employeeId, (id, schedule) -> {
+                    Schedule remaining = schedule.without(tripId);
+                    return remaining.size() == 0 ? null : remaining;
+                });
+            }
+        });
+    }
+
+    public void removeEmployeeAfterCommit(Long employeeId) {
+        AfterCommit.run(() -> {
+            Schedule schedule = schedules.remove(employeeId);
+            if (schedule == null) {
+                return;
+            }
+            for (long tripId : schedule.tripIds) {
+                removeTraveller(tripId, employeeId);
+            }
+        });
+    }
+
+    private void addTraveller(Long tripId, Long employeeId) {
+        travellers.compute(tripId, (id, employeeIds) -> {
+            Set<Long> result = employeeIds == null ? ConcurrentHashMap.newKeySet() : employeeIds;
+            result.add(employeeId);
+            return result;
+        });
+    }
+
+    private void removeTraveller(Long tripId, Long employeeId) {
+        travellers.computeIfPresent(tripId, (id, employeeIds) -> {
+            employeeIds.remove(employeeId);
+            return employeeIds.isEmpty() ? null : employeeIds;
+        });
+    }
+}
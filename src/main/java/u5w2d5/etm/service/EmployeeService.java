@@ -1,18 +1,24 @@
 package u5w2d5.etm.service;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
-import org.springframework.beans.BeanUtils;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.validation.annotation.Validated;
 
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import u5w2d5.etm.auth.service.TokenVersionRegistry;
+import u5w2d5.etm.auth.service.UserDetailsCache;
+import u5w2d5.etm.mapper.EmployeeMapper;
 import u5w2d5.etm.model.*;
 import u5w2d5.etm.repository.*;
+import u5w2d5.etm.repository.projection.EmployeeSummary;
+import u5w2d5.etm.repository.projection.EmployeeTripId;
 import u5w2d5.etm.request.EmployeeRequestDTO;
 import u5w2d5.etm.response.IdResponse;
 import u5w2d5.etm.response.EmployeeResponseDTO;
@@ -23,28 +29,80 @@ import u5w2d5.etm.response.EmployeeResponseDTO;
 @Validated
 public class EmployeeService {
 
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 1000;
+
     private final EmployeeRepository employeeRepository;
+    private final BookingRepository bookingRepository;
+    private final UserDetailsCache userDetailsCache;
+    private final TokenVersionRegistry tokenVersionRegistry;
+    private final SeatReservationEngine seatReservationEngine;
+    private final EmployeeMapper employeeMapper;
+    private final SearchIndex searchIndex;
+    private final EmployeeScheduleIndex employeeScheduleIndex;
 
     public List<Employee> getAll() {
         return employeeRepository.findAll();
     }
 
-    public List<EmployeeResponseDTO> getAllDTO() {
-        List<EmployeeResponseDTO> employeeDTOs = new ArrayList<>();
+    public long count() {
+        return employeeRepository.count();
+    }
 
-        for (Employee employee : employeeRepository.findAll()) {
-            EmployeeResponseDTO employeeDTO = new EmployeeResponseDTO();
-            BeanUtils.copyProperties(employee, employeeDTO);
+    /**
+     * Restituisce una pagina di dipendenti ordinata per id (paginazione keyset).
+     * Costa sempre due query, indipendentemente dal numero di dipendenti: una per
+     * la pagina e una, aggregata, per i viaggi prenotati dai dipendenti della
+     * pagina.
+     *
+     * @param after id dell'ultimo dipendente della pagina precedente (null per la
+     *              prima pagina)
+     * @param limit numero massimo di dipendenti restituiti
+     */
+    public List<EmployeeResponseDTO> getAllDTO(Long after, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
 
-            List<Booking> employeeBookings = employee.getBookings();
-            List<Long> tripIds = employeeBookings.stream()
-                    .map(booking -> booking.getTrip().getId())
-                    .collect(Collectors.toList());
-            employeeDTO.setTripIds(tripIds);
+        List<EmployeeSummary> page = employeeRepository.findByIdGreaterThanOrderByIdAsc(
+                after == null ? 0L : after, Limit.of(limit));
+        if (page.isEmpty()) {
+            return new ArrayList<>();
+        }
 
-            employeeDTOs.add(employeeDTO);
+        Map<Long, EmployeeResponseDTO> employeeDTOs = new LinkedHashMap<>();
+        for (EmployeeSummary employee : page) {
+            employeeDTOs.put(employee.getId(), new EmployeeResponseDTO(
+                    employee.getId(),
+                    employee.getUsername(),
+                    employee.getFirstName(),
+                    employee.getLastName(),
+                    employee.getEmail(),
+                    employee.getAvatarUrl(),
+                    new ArrayList<>()));
         }
-        return employeeDTOs;
+
+        for (EmployeeTripId row : bookingRepository.findTripIdsByEmployeeIds(employeeDTOs.keySet())) {
+            employeeDTOs.get(row.getEmployeeId()).getTripIds().add(row.getTripId());
+        }
+        return new ArrayList<>(employeeDTOs.values());
+    }
+
+    /**
+     * ETag di una pagina di dipendenti: cambia quando cambia un dipendente o una
+     * prenotazione (i viaggi prenotati fanno parte della risposta). Costa due
+     * query aggregate, senza leggere la pagina.
+     */
+    public String getAllETag(Long after, int limit) {
+        return "employees-" + (after == null ? 0L : after) + "." + limit
+                + "-" + employeeRepository.findVersionStamp().asTag()
+                + "-" + bookingRepository.findVersionStamp().asTag();
+    }
+
+    public String getEmployeeETag(Long id) {
+        Long version = employeeRepository.findVersionById(id)
+                .orElseThrow(() -> new EntityNotFoundException("Employee not found with id: " + id));
+        return "employee-" + id + "." + version + "-" + bookingRepository.findVersionStampByEmployeeId(id).asTag();
     }
 
     public Employee getEmployeeById(Long id) {
@@ -57,35 +115,40 @@ public class EmployeeService {
         Employee employee = employeeRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException("Employee not found with id: " + id));
 
-        EmployeeResponseDTO employeeDTO = new EmployeeResponseDTO();
-        BeanUtils.copyProperties(employee, employeeDTO);
-        List<Booking> employeeBookings = employee.getBookings();
-        List<Long> tripIds = employeeBookings.stream()
-                .map(booking -> booking.getTrip().getId())
-                .collect(Collectors.toList());
-
-        employeeDTO.setTripIds(tripIds);
-        return employeeDTO;
+        return employeeMapper.toResponse(employee, bookingRepository.findTripIdsByEmployeeId(id));
     }
 
     public IdResponse createEmployee(EmployeeRequestDTO employee) {
-        Employee newEmployee = new Employee();
-        BeanUtils.copyProperties(employee, newEmployee);
-        return new IdResponse(employeeRepository.save(newEmployee).getId());
+        Employee saved = employeeRepository.save(employeeMapper.toEntity(employee));
+        searchIndex.indexAfterCommit(saved);
+        return new IdResponse(saved.getId());
     }
 
     public Employee updateEmployee(Long id, Employee employeeDetails) {
         Employee employee = getEmployeeById(id);
+        String previousUsername = employee.getUsername();
+        // Username ed email sono le chiavi della cache di autenticazione
+        userDetailsCache.evict(employee.getUsername(), employee.getEmail());
         employee.setUsername(employeeDetails.getUsername());
+        if (!employee.getUsername().equals(previousUsername)) {
+            tokenVersionRegistry.remove(previousUsername);
+        }
         employee.setFirstName(employeeDetails.getFirstName());
         employee.setLastName(employeeDetails.getLastName());
         employee.setEmail(employeeDetails.getEmail());
         employee.setAvatarUrl(employeeDetails.getAvatarUrl());
+        searchIndex.indexAfterCommit(employee);
         return employeeRepository.save(employee);
     }
 
     public void deleteEmployee(Long id) {
         Employee employee = getEmployeeById(id);
+        // Le prenotazioni vengono cancellate in cascata: i loro posti tornano liberi
+        bookingRepository.findTripIdsByEmployeeId(id).forEach(seatReservationEngine::releaseAfterCommit);
         employeeRepository.delete(employee);
+        userDetailsCache.evict(employee.getUsername(), employee.getEmail());
+        tokenVersionRegistry.remove(employee.getUsername());
+        searchIndex.removeEmployeeAfterCommit(id);
+        employeeScheduleIndex.removeEmployeeAfterCommit(id);
     }
 }
\ No newline at end of file
@@ -0,0 +1,199 @@
+package u5w2d5.etm.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import u5w2d5.etm.exception.ServiceUnavailableException;
+import u5w2d5.etm.response.ImageUploadJobDTO;
+import u5w2d5.etm.response.ImageUploadJobDTO.Status;
+
+/**
+ * Upload delle immagini in background, su un pool di thread dedicato e
+ * limitato, invece che sui thread di Tomcat.
+ *
+ * Funzionamento:
+ * - Il file multipart viene spostato dalla cartella temporanea del server a
+ * una cartella del service (di solito è solo un rename) e poi inviato in
+ * streaming dal disco: il contenuto non passa mai per intero nell'heap.
+ * - La richiesta riceve subito l'id del job; lo stato si legge con
+ * {@link #getJob}. Solo chi ha caricato il file vede il suo job.
+ * - Quando la coda è piena l'upload viene rifiutato subito con un 503
+ * ({@link ServiceUnavailableException}).
+ * - I job restano consultabili per etm.images.upload.job-ttl dalla creazione.
+ *
+ * Metriche esposte:
+ * - etm.images.upload (timer, tag outcome=completed|failed)
+ * - etm.images.upload.queue / etm.images.upload.active (gauge)
+ * - etm.images.upload.rejected (counter)
+ */
+@Service
+@Slf4j
+public class ImageUploadService implements DisposableBean {
+
+    private final ImageUploader imageUploader;
+    private final ThreadPoolExecutor executor;
+    private final Cache<String, Job> jobs;
+    private final Path directory;
+    private final Timer completedTimer;
+    private final Timer failedTimer;
+    private final Counter rejected;
+
+    private static final class Job {
+
+        final String id;
+        final String owner;
+        final LocalDateTime createdAt = LocalDateTime.now();
+        volatile Status status = Status.PENDING;
+        volatile String secureUrl;
+        volatile String error;
+        volatile LocalDateTime completedAt;
+
+        Job(String id, String owner) {
+            this.id = id;
+            this.owner = owner;
+        }
+
+        ImageUploadJobDTO toDTO() {
+            return new ImageUploadJobDTO(id, status, secureUrl, error, createdAt, completedAt);
+        }
+    }
+
+    public ImageUploadService(ImageUploader imageUploader,
+            @Value("${etm.images.upload.threads:4}") int threads,
+            @Value("${etm.images.upload.queue-capacity:50}") int queueCapacity,
+            @Value("${etm.images.upload.job-ttl:1h}") Duration jobTimeToLive,
+            MeterRegistry meterRegistry) throws IOException {
+        this.imageUploader = imageUploader;
+        this.directory = Files.createTempDirectory("etm-uploads-");
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-upload-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.jobs = Caffeine.newBuilder()
+                .expireAfterWrite(jobTimeToLive)
+                .build();
+
+        this.completedTimer = Timer.builder("etm.images.upload")
+                .tag("outcome", "completed")
+                .register(meterRegistry);
+        this.failedTimer = Timer.builder("etm.images.upload")
+                .tag("outcome", "failed")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("etm.images.upload.rejected")
+                .register(meterRegistry);
+        Gauge.builder("etm.images.upload.queue", executor, e -> e.getQueue().size())
+                .register(meterRegistry);
+        Gauge.builder("etm.images.upload.active", executor, ThreadPoolExecutor::getActiveCount)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Mette in coda l'upload del file e restituisce il job, ancora PENDING.
+     *
+     * @param owner username di chi carica il file
+     */
+    public ImageUploadJobDTO submit(MultipartFile file, String owner) {
+        if (file.isEmpty()) {
+            throw new IllegalArgumentException("The file is empty");
+        }
+        Job job = new Job(UUID.randomUUID().toString(), owner);
+        String publicId = file.getOriginalFilename() == null || file.getOriginalFilename().isBlank()
+                ? job.id
+                : file.getOriginalFilename();
+
+        // La cartella temporanea del multipart viene svuotata a fine richiesta:
+        // il file va spostato prima di rispondere
+        Path path = directory.resolve(job.id);
+        try {
+            file.transferTo(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        jobs.put(job.id, job);
+        try {
+            executor.execute(() -> upload(job, path, publicId));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            jobs.invalidate(job.id);
+            delete(path);
+            throw new ServiceUnavailableException("Too many uploads in progress, retry later", e);
+        }
+        return job.toDTO();
+    }
+
+    public ImageUploadJobDTO getJob(String id, String owner) {
+        Job job = jobs.getIfPresent(id);
+        // Un job di un altro utente risulta inesistente
+        if (job == null || !job.owner.equals(owner)) {
+            throw new EntityNotFoundException("Upload job not found with id: " + id);
+        }
+        return job.toDTO();
+    }
+
+    private void upload(Job job, Path path, String publicId) {
+        long start = System.nanoTime();
+        job.status = Status.RUNNING;
+        try {
+            job.secureUrl = imageUploader.upload(path.toFile(), publicId);
+            // Lo stato per ultimo: chi legge COMPLETED trova già URL e data
+            job.completedAt = LocalDateTime.now();
+            job.status = Status.COMPLETED;
+            completedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        } catch (Exception e) {
+            log.warn("Upload {} non riuscito: {}", job.id, e.getMessage());
+            job.error = e.getMessage();
+            job.completedAt = LocalDateTime.now();
+            job.status = Status.FAILED;
+            failedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        } finally {
+            delete(path);
+        }
+    }
+
+    private static void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Impossibile cancellare il file temporaneo {}", path, e);
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package u5w2d5.etm.service;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Destinazione delle immagini caricate. L'implementazione reale è
+ * {@link CloudinaryImageUploader}; i test ne usano una locale.
+ */
+public interface ImageUploader {
+
+    /**
+     * Carica il file, letto dal disco, e restituisce l'URL https pubblico.
+     */
+    String upload(File file, String publicId) throws IOException;
+}
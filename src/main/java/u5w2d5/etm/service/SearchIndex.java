@@ -0,0 +1,240 @@
+package u5w2d5.etm.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import u5w2d5.etm.model.Employee;
+import u5w2d5.etm.model.Trip;
+import u5w2d5.etm.repository.EmployeeRepository;
+import u5w2d5.etm.repository.TripRepository;
+import u5w2d5.etm.repository.projection.EmployeeSummary;
+import u5w2d5.etm.repository.projection.TripDescription;
+import u5w2d5.etm.response.SearchResultDTO;
+import u5w2d5.etm.response.SearchResultDTO.Type;
+
+/**
+ * Indice invertito in memoria per la ricerca per prefisso di dipendenti
+ * (username, nome, cognome, email) e viaggi (descrizione).
+ *
+ * Funzionamento:
+ * - Ogni campo viene diviso in parole, in minuscolo e senza accenti: "Nicolò
+ * D'Amico" diventa nicolo, d, amico.
+ * - Le parole sono le chiavi di una mappa ordinata (skip list) verso i
+ * documenti che le contengono: le parole che iniziano con un prefisso sono un
+ * intervallo contiguo della mappa, senza scandire tutto l'indice.
+ * - Con più parole nella query si scorre l'intervallo della parola più lunga
+ * (la più selettiva) e si verificano le altre sulle parole del documento. La
+ * scansione si ferma appena ci sono abbastanza risultati.
+ * - Le letture non prendono lock; le scritture, rare, sono serializzate.
+ * - L'indice viene costruito all'avvio, con dipendenti e viaggi letti in
+ * parallelo, e aggiornato dai service dopo il commit di ogni modifica.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SearchIndex implements SmartInitializingSingleton {
+
+    public static final int DEFAULT_LIMIT = 20;
+    public static final int MAX_LIMIT = 100;
+
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+
+    private final EmployeeRepository employeeRepository;
+    private final TripRepository tripRepository;
+
+    private final NavigableMap<String, Set<Key>> postings = new ConcurrentSkipListMap<>();
+    private final Map<Key, Document> documents = new ConcurrentHashMap<>();
+
+    private record Key(Type type, long id) {
+    }
+
+    private record Document(Key key, String label, String[] words) {
+
+        boolean matchesAll(List<String> prefixes) {
+            for (String prefix : prefixes) {
+                if (Arrays.stream(words).noneMatch(word -> word.startsWith(prefix))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        SearchResultDTO toResult() {
+            return new SearchResultDTO(key.type(), key.id(), label);
+        }
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        rebuild();
+    }
+
+    public synchronized void rebuild() {
+        long start = System.nanoTime();
+        CompletableFuture<List<EmployeeSummary>> employees = CompletableFuture
+                .supplyAsync(employeeRepository::findAllSummaries);
+        CompletableFuture<List<TripDescription>> trips = CompletableFuture
+                .supplyAsync(tripRepository::findAllDescriptions);
+
+        // Durante la ricostruzione le ricerche possono restituire risultati parziali:
+        // succede solo all'avvio o dopo un caricamento massivo
+        postings.clear();
+        documents.clear();
+        // Le strutture sono concorrenti: i documenti si aggiungono in parallelo
+        employees.join().parallelStream()
+                .map(employee -> employeeDocument(employee.getId(), employee.getUsername(),
+                        employee.getFirstName(), employee.getLastName(), employee.getEmail()))
+                .forEach(this::add);
+        trips.join().parallelStream()
+                .map(trip -> tripDocument(trip.getId(), trip.getDescription()))
+                .forEach(this::add);
+
+        log.info("Indice di ricerca ricostruito: {} documenti, {} parole in {} ms",
+                documents.size(), postings.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Cerca i documenti che contengono, per ogni parola della query, almeno una
+     * parola che inizia con essa.
+     *
+     * @param type  null per cercare sia dipendenti sia viaggi
+     * @param limit numero massimo di risultati
+     */
+    public List<SearchResultDTO> search(String query, Type type, int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_LIMIT);
+        }
+        List<String> prefixes = words(query);
+        if (prefixes.isEmpty()) {
+            throw new IllegalArgumentException("Query must contain at least one letter or digit");
+        }
+        String longest = prefixes.stream().max(Comparator.comparingInt(String::length)).get();
+
+        // Le parole uguali al prefisso vengono per prime: la corrispondenza esatta
+        // precede i completamenti
+        Set<Key> matches = new LinkedHashSet<>();
+        for (Set<Key> keys : postings.subMap(longest, true, longest + Character.MAX_VALUE, false).values()) {
+            for (Key key : keys) {
+                if ((type != null && key.type() != type) || matches.contains(key)) {
+                    continue;
+                }
+                Document document = documents.get(key);
+                if (document != null && document.matchesAll(prefixes)) {
+                    matches.add(key);
+                    if (matches.size() == limit) {
+                        return results(matches);
+                    }
+                }
+            }
+        }
+        return results(matches);
+    }
+
+    private List<SearchResultDTO> results(Set<Key> keys) {
+        List<SearchResultDTO> results = new ArrayList<>(keys.size());
+        for (Key key : keys) {
+            Document document = documents.get(key);
+            if (document != null) {
+                results.add(document.toResult());
+            }
+        }
+        return results;
+    }
+
+    public void indexAfterCommit(Employee employee) {
+        Document document = employeeDocument(employee.getId(), employee.getUsername(), employee.getFirstName(),
+                employee.getLastName(), employee.getEmail());
+        AfterCommit.run(() -> replace(document));
+    }
+
+    // Per gli inserimenti fatti via JDBC, senza entità
+    public void indexEmployee(Long id, String username, String firstName, String lastName, String email) {
+        replace(employeeDocument(id, username, firstName, lastName, email));
+    }
+
+    public void indexAfterCommit(Trip trip) {
+        Document document = tripDocument(trip.getId(), trip.getDescription());
+        AfterCommit.run(() -> replace(document));
+    }
+
+    public void removeEmployeeAfterCommit(Long id) {
+        AfterCommit.run(() -> remove(new Key(Type.EMPLOYEE, id)));
+    }
+
+    public void removeTripAfterCommit(Long id) {
+        AfterCommit.run(() -> remove(new Key(Type.TRIP, id)));
+    }
+
+    private static Document employeeDocument(Long id, String username, String firstName, String lastName,
+            String email) {
+        return new Document(new Key(Type.EMPLOYEE, id), firstName + " " + lastName + " (" + username + ")",
+                documentWords(username, firstName, lastName, email));
+    }
+
+    private static Document tripDocument(Long id, String description) {
+        return new Document(new Key(Type.TRIP, id), description, documentWords(description));
+    }
+
+    private synchronized void replace(Document document) {
+        remove(document.key());
+        add(document);
+    }
+
+    private void add(Document document) {
+        documents.put(document.key(), document);
+        for (String word : document.words()) {
+            postings.computeIfAbsent(word, w -> ConcurrentHashMap.newKeySet()).add(document.key());
+        }
+    }
+
+    private synchronized void remove(Key key) {
+        Document document = documents.remove(key);
+        if (document == null) {
+            return;
+        }
+        for (String word : document.words()) {
+            postings.computeIfPresent(word, (w, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+
+    private static String[] documentWords(String... fields) {
+        Set<String> words = new LinkedHashSet<>();
+        for (String field : fields) {
+            words.addAll(words(field));
+        }
+        return words.toArray(String[]::new);
+    }
+
+    static List<String> words(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        String normalized = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        return Arrays.stream(WORD_SEPARATOR.split(normalized))
+                .filter(word -> !word.isEmpty())
+                .distinct()
+                .toList();
+    }
+}
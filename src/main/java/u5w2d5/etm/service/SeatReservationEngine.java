@@ -0,0 +1,186 @@
+package u5w2d5.etm.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import u5w2d5.etm.exception.ConflictException;
+import u5w2d5.etm.repository.TripRepository;
+import u5w2d5.etm.repository.projection.TripSeats;
+
+/**
+ * Posti ancora disponibili per ogni viaggio con capienza, tenuti in memoria in
+ * contatori atomici.
+ *
+ * Funzionamento:
+ * - Una prenotazione prende un posto con un compare-and-set sul contatore del
+ * viaggio: nessun lock sulla riga del viaggio e nessuna serializzazione delle
+ * scritture sui viaggi più richiesti.
+ * - Il posto è legato alla transazione che crea la prenotazione: se la
+ * transazione viene annullata il posto torna disponibile.
+ * - I viaggi senza capienza non hanno un contatore e ammettono sempre; le
+ * prenotazioni in corso su questi viaggi vengono però contate, così quando il
+ * viaggio riceve una capienza nessuna di esse va persa.
+ * - All'avvio i contatori vengono ricostruiti dalla tabella bookings, prima che
+ * il server inizi ad accettare richieste.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SeatReservationEngine implements SmartInitializingSingleton {
+
+    private final TripRepository tripRepository;
+
+    private final Map<Long, AtomicInteger> remainingSeats = new ConcurrentHashMap<>();
+    // Transazioni aperte che hanno prenotato un viaggio senza contatore
+    private final Map<Long, AtomicInteger> uncountedInFlight = new ConcurrentHashMap<>();
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        rebuild();
+    }
+
+    public void rebuild() {
+        remainingSeats.clear();
+        for (TripSeats trip : tripRepository.findSeatUsage()) {
+            remainingSeats.put(trip.getTripId(), new AtomicInteger((int) (trip.getCapacity() - trip.getBooked())));
+        }
+        log.info("Posti disponibili ricostruiti per {} viaggi", remainingSeats.size());
+    }
+
+    /**
+     * Prova a prendere un posto sul viaggio.
+     *
+     * @return true se il posto è stato preso (o il viaggio non ha capienza)
+     */
+    public boolean tryReserve(Long tripId) {
+        AtomicInteger seats = remainingSeats.get(tripId);
+        if (seats == null) {
+            return true;
+        }
+        int current;
+        do {
+            current = seats.get();
+            if (current <= 0) {
+                return false;
+            }
+        } while (!seats.compareAndSet(current, current - 1));
+        return true;
+    }
+
+    public void release(Long tripId) {
+        AtomicInteger seats = remainingSeats.get(tripId);
+        if (seats != null) {
+            seats.incrementAndGet();
+        }
+    }
+
+    /**
+     * Prende un posto per la transazione corrente e lo restituisce se la
+     * transazione non arriva al commit.
+     *
+     * @throws ConflictException se il viaggio è al completo
+     */
+    public void reserve(Long tripId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive() && reserveUncounted(tripId)) {
+            return;
+        }
+        if (!tryReserve(tripId)) {
+            throw new ConflictException("The trip is fully booked.");
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        release(tripId);
+                    }
+                }
+            });
+        }
+    }
+
+    // La prenotazione viene registrata prima di controllare il contatore: se il
+    // contatore arriva dopo, chi lo installa la trova in uncountedInFlight
+    private boolean reserveUncounted(Long tripId) {
+        if (remainingSeats.containsKey(tripId)) {
+            return false;
+        }
+        uncountedInFlight.compute(tripId, (id, count) -> {
+            AtomicInteger result = count == null ? new AtomicInteger() : count;
+            result.incrementAndGet();
+            return result;
+        });
+        if (remainingSeats.containsKey(tripId)) {
+            // Il viaggio ha appena ricevuto una capienza: vale il contatore
+            completeUncounted(tripId);
+            return false;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                completeUncounted(tripId);
+            }
+        });
+        return true;
+    }
+
+    private void completeUncounted(Long tripId) {
+        uncountedInFlight.computeIfPresent(tripId, (id, count) -> count.decrementAndGet() == 0 ? null : count);
+    }
+
+    // Il posto torna disponibile solo quando la cancellazione è definitiva
+    public void releaseAfterCommit(Long tripId) {
+        AfterCommit.run(() -> release(tripId));
+    }
+
+    /**
+     * Applica un cambio di capienza dopo il commit. Il contatore viene spostato
+     * della differenza, così le prenotazioni in corso non vanno perse.
+     *
+     * Se il viaggio prima non aveva capienza il contatore viene installato a zero
+     * (per un istante le nuove prenotazioni vengono rifiutate) e poi ridotto di
+     * prenotazioni già salvate e prenotazioni ancora in corso. Le transazioni in
+     * corso vengono lette prima del conteggio: una che nel frattempo arriva al
+     * commit (o viene annullata) toglie un posto di troppo fino al riavvio, ma
+     * nessuna prenotazione sfugge al limite.
+     *
+     * @param bookedCount prenotazioni esistenti, letto dopo il commit solo se il
+     *                    viaggio prima non aveva capienza
+     */
+    public void changeCapacityAfterCommit(Long tripId, Integer oldCapacity, Integer newCapacity,
+            LongSupplier bookedCount) {
+        if (newCapacity == null) {
+            AfterCommit.run(() -> remainingSeats.remove(tripId));
+        } else if (oldCapacity == null) {
+            AfterCommit.run(() -> {
+                AtomicInteger seats = new AtomicInteger();
+                remainingSeats.put(tripId, seats);
+                AtomicInteger inFlight = uncountedInFlight.get(tripId);
+                int pending = inFlight == null ? 0 : inFlight.get();
+                long booked = bookedCount.getAsLong();
+                seats.addAndGet((int) (newCapacity - booked - pending));
+            });
+        } else if (!oldCapacity.equals(newCapacity)) {
+            int delta = newCapacity - oldCapacity;
+            AfterCommit.run(() -> remainingSeats.computeIfAbsent(tripId, id -> new AtomicInteger()).addAndGet(delta));
+        }
+    }
+
+    public void removeAfterCommit(Long tripId) {
+        AfterCommit.run(() -> remainingSeats.remove(tripId));
+    }
+
+    public Integer getRemainingSeats(Long tripId) {
+        AtomicInteger seats = remainingSeats.get(tripId);
+        return seats == null ? null : seats.get();
+    }
+}
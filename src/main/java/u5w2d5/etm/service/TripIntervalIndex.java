@@ -0,0 +1,218 @@
+package u5w2d5.etm.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import u5w2d5.etm.model.Trip;
+import u5w2d5.etm.repository.TripRepository;
+import u5w2d5.etm.repository.projection.TripInterval;
+
+/**
+ * Albero degli intervalli [startDate, endDate] dei viaggi, per trovare in
+ * O(log n + k) i viaggi attivi in un periodo senza interrogare il database.
+ *
+ * Funzionamento:
+ * - È un treap (albero binario di ricerca bilanciato con priorità casuali)
+ * ordinato per data di inizio e id; ogni nodo conosce la data di fine massima
+ * del proprio sottoalbero, così la ricerca scarta i rami che finiscono prima
+ * del periodo cercato.
+ * - I nodi sono immutabili: una modifica copia solo il percorso dalla radice al
+ * nodo e pubblica la nuova radice. Le letture non prendono lock e vedono
+ * sempre un albero coerente; le scritture sono serializzate.
+ * - L'albero viene costruito all'avvio dalla tabella trips e aggiornato da
+ * {@link TripService} dopo il commit di ogni modifica.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TripIntervalIndex implements SmartInitializingSingleton {
+
+    private final TripRepository tripRepository;
+
+    private volatile Node root;
+    // Intervallo corrente di ogni viaggio, per trovarne il nodo quando cambia
+    private final Map<Long, Node> nodes = new ConcurrentHashMap<>();
+
+    private static final class Node {
+
+        final long start;
+        final long end;
+        final long id;
+        final int priority;
+        final Node left;
+        final Node right;
+        final long maxEnd;
+
+        Node(long start, long end, long id, int priority, Node left, Node right) {
+            this.start = start;
+            this.end = end;
+            this.id = id;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            long max = end;
+            if (left != null && left.maxEnd > max) {
+                max = left.maxEnd;
+            }
+            if (right != null && right.maxEnd > max) {
+                max = right.maxEnd;
+            }
+            this.maxEnd = max;
+        }
+
+        Node with(Node left, Node right) {
+            return new Node(start, end, id, priority, left, right);
+        }
+
+        boolean before(long otherStart, long otherId) {
+            return start < otherStart || (start == otherStart && id < otherId);
+        }
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        rebuild();
+    }
+
+    public synchronized void rebuild() {
+        Node newRoot = null;
+        nodes.clear();
+        for (TripInterval trip : tripRepository.findAllIntervals()) {
+            Node node = node(trip.getId(), trip.getStartDate(), trip.getEndDate());
+            newRoot = insert(newRoot, node);
+            nodes.put(trip.getId(), node);
+        }
+        root = newRoot;
+        log.info("Indice degli intervalli dei viaggi ricostruito: {} viaggi", nodes.size());
+    }
+
+    /**
+     * Id dei viaggi che hanno almeno un giorno in comune con [from, to], ordinati
+     * per data di inizio.
+     *
+     * @param from null = nessun limite inferiore
+     * @param to   null = nessun limite superiore
+     */
+    public List<Long> findOverlapping(LocalDate from, LocalDate to) {
+        List<Long> ids = new ArrayList<>();
+        collect(root, from == null ? Long.MIN_VALUE : from.toEpochDay(),
+                to == null ? Long.MAX_VALUE : to.toEpochDay(), ids);
+        return ids;
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    public void putAfterCommit(Trip trip) {
+        Long id = trip.getId();
+        LocalDate startDate = trip.getStartDate();
+        LocalDate endDate = trip.getEndDate();
+        AfterCommit.run(() -> put(id, startDate, endDate));
+    }
+
+    public void removeAfterCommit(Long id) {
+        AfterCommit.run(() -> remove(id));
+    }
+
+    private synchronized void put(Long id, LocalDate startDate, LocalDate endDate) {
+        Node current = nodes.get(id);
+        if (current != null && current.start == startDate.toEpochDay() && current.end == endDate.toEpochDay()) {
+            return;
+        }
+        Node tree = current == null ? root : delete(root, current.start, current.id);
+        Node node = node(id, startDate, endDate);
+        root = insert(tree, node);
+        nodes.put(id, node);
+    }
+
+    private synchronized void remove(Long id) {
+        Node current = nodes.remove(id);
+        if (current != null) {
+            root = delete(root, current.start, current.id);
+        }
+    }
+
+    private static Node node(Long id, LocalDate startDate, LocalDate endDate) {
+        return new Node(startDate.toEpochDay(), endDate.toEpochDay(), id,
+                ThreadLocalRandom.current().nextInt(), null, null);
+    }
+
+    // Il sottoalbero di sinistra ha inizi minori o uguali: se il nodo inizia dopo
+    // "to" anche tutto il sottoalbero di destra è fuori dal periodo
+    private static void collect(Node node, long from, long to, List<Long> ids) {
+        if (node == null || node.maxEnd < from) {
+            return;
+        }
+        collect(node.left, from, to, ids);
+        if (node.start <= to) {
+            if (node.end >= from) {
+                ids.add(node.id);
+            }
+            collect(node.right, from, to, ids);
+        }
+    }
+
+    private static Node insert(Node tree, Node node) {
+        if (tree == null) {
+            return node;
+        }
+        if (node.priority > tree.priority) {
+            Node[] parts = split(tree, node.start, node.id);
+            return node.with(parts[0], parts[1]);
+        }
+        if (node.before(tree.start, tree.id)) {
+            return tree.with(insert(tree.left, node), tree.right);
+        }
+        return tree.with(tree.left, insert(tree.right, node));
+    }
+
+    private static Node delete(Node tree, long start, long id) {
+        if (tree == null) {
+            return null;
+        }
+        if (tree.start == start && tree.id == id) {
+            return merge(tree.left, tree.right);
+        }
+        if (tree.before(start, id)) {
+            return tree.with(tree.left, delete(tree.right, start, id));
+        }
+        return tree.with(delete(tree.left, start, id), tree.right);
+    }
+
+    // Divide l'albero in nodi che precedono (start, id) e nodi che lo seguono
+    private static Node[] split(Node tree, long start, long id) {
+        if (tree == null) {
+            return new Node[] { null, null };
+        }
+        if (tree.before(start, id)) {
+            Node[] parts = split(tree.right, start, id);
+            return new Node[] { tree.with(tree.left, parts[0]), parts[1] };
+        }
+        Node[] parts = split(tree.left, start, id);
+        return new Node[] { parts[0], tree.with(parts[1], tree.right) };
+    }
+
+    // Tutti i nodi di "left" precedono quelli di "right"
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            return left.with(left.left, merge(left.right, right));
+        }
+        return right.with(merge(left, right.left), right.right);
+    }
+}
@@ -1,19 +1,23 @@
 package u5w2d5.etm.service;
 
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
-import org.springframework.beans.BeanUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.validation.annotation.Validated;
 
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import u5w2d5.etm.mapper.TripMapper;
 import u5w2d5.etm.model.*;
 import u5w2d5.etm.repository.*;
+import u5w2d5.etm.repository.projection.TripEmployeeId;
 import u5w2d5.etm.request.TripRequestDTO;
+import u5w2d5.etm.request.TripUpdateRequestDTO;
 import u5w2d5.etm.response.IdResponse;
 import u5w2d5.etm.response.TripResponseDTO;
 
@@ -25,29 +29,120 @@ public class TripService {
 
     private final TripRepository tripRepository;
     private final BookingRepository bookingRepository;
+    private final SeatReservationEngine seatReservationEngine;
+    private final TripMapper tripMapper;
+    private final SearchIndex searchIndex;
+    private final TripIntervalIndex tripIntervalIndex;
+    private final EmployeeScheduleIndex employeeScheduleIndex;
+
+    // Oltre questa soglia gli id vengono passati alle query "in" a blocchi
+    private static final int IN_CLAUSE_CHUNK = 1000;
 
     public List<Trip> getAll() {
         return tripRepository.findAll();
     }
 
+    // Due query in tutto: i viaggi e, in un colpo solo, il roster di ogni viaggio
+    // letto dalla tabella bookings
     public List<TripResponseDTO> getAllTripsDTO() {
-        List<TripResponseDTO> tripDTOs = new ArrayList<>();
+        Map<Long, List<Long>> rosters = new HashMap<>();
+        for (TripEmployeeId row : bookingRepository.findAllTripRosters()) {
+            rosters.computeIfAbsent(row.getTripId(), tripId -> new ArrayList<>()).add(row.getEmployeeId());
+        }
 
+        List<TripResponseDTO> tripDTOs = new ArrayList<>();
         for (Trip trip : tripRepository.findAll()) {
-            TripResponseDTO tripDTO = new TripResponseDTO();
-            BeanUtils.copyProperties(trip, tripDTO);
+            tripDTOs.add(tripMapper.toResponse(trip, rosters.getOrDefault(trip.getId(), new ArrayList<>())));
+        }
+        return tripDTOs;
+    }
 
-            List<Booking> tripBookings = trip.getBookings();
-            List<Long> employeeIds = tripBookings.stream()
-                    .map(booking -> booking.getEmployee().getId())
-                    .collect(Collectors.toList());
-            tripDTO.setEmployeeIds(employeeIds);
+    /**
+     * Viaggi filtrati per periodo e stato, ordinati per data di inizio. Un
+     * viaggio è nel periodo se ha almeno un giorno in comune con [from, to].
+     *
+     * - Solo periodo: gli id vengono dall'albero degli intervalli in memoria
+     * ({@link TripIntervalIndex}) e si leggono solo i viaggi trovati.
+     * - Con lo stato: una query sull'indice (status, start_date, end_date).
+     * - Senza filtri: come {@link #getAllTripsDTO()}.
+     */
+    public List<TripResponseDTO> getTripsDTO(LocalDate from, LocalDate to, TripStatus status) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        if (from == null && to == null && status == null) {
+            return getAllTripsDTO();
+        }
+
+        List<Trip> trips;
+        if (status != null) {
+            trips = tripRepository.findByStatusOverlapping(status,
+                    from == null ? LocalDate.of(1, 1, 1) : from,
+                    to == null ? LocalDate.of(9999, 12, 31) : to);
+        } else {
+            List<Long> ids = tripIntervalIndex.findOverlapping(from, to);
+            Map<Long, Trip> byId = new HashMap<>();
+            for (List<Long> chunk : chunks(ids)) {
+                tripRepository.findAllById(chunk).forEach(trip -> byId.put(trip.getId(), trip));
+            }
+            trips = new ArrayList<>(ids.size());
+            for (Long id : ids) {
+                // Un viaggio appena cancellato può essere ancora nell'albero
+                if (byId.containsKey(id)) {
+                    trips.add(byId.get(id));
+                }
+            }
+        }
 
-            tripDTOs.add(tripDTO);
+        Map<Long, List<Long>> rosters = new HashMap<>();
+        for (List<Long> chunk : chunks(trips.stream().map(Trip::getId).toList())) {
+            for (TripEmployeeId row : bookingRepository.findTripRostersByTripIds(chunk)) {
+                rosters.computeIfAbsent(row.getTripId(), tripId -> new ArrayList<>()).add(row.getEmployeeId());
+            }
+        }
+
+        List<TripResponseDTO> tripDTOs = new ArrayList<>(trips.size());
+        for (Trip trip : trips) {
+            tripDTOs.add(tripMapper.toResponse(trip, rosters.getOrDefault(trip.getId(), new ArrayList<>())));
         }
         return tripDTOs;
     }
 
+    private static List<List<Long>> chunks(List<Long> ids) {
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += IN_CLAUSE_CHUNK) {
+            chunks.add(ids.subList(from, Math.min(from + IN_CLAUSE_CHUNK, ids.size())));
+        }
+        return chunks;
+    }
+
+    // Stessi timbri della lista completa: qualunque modifica invalida anche le
+    // liste filtrate
+    public String getTripsETag(LocalDate from, LocalDate to, TripStatus status) {
+        if (from == null && to == null && status == null) {
+            return getAllTripsETag();
+        }
+        return "trips-" + from + "." + to + "." + (status == null ? null : status.name())
+                + "-" + tripRepository.findVersionStamp().asTag()
+                + "-" + bookingRepository.findVersionStamp().asTag();
+    }
+
+    /**
+     * ETag della lista dei viaggi. I roster fanno parte della risposta, quindi
+     * l'ETag dipende sia dai viaggi sia dalle prenotazioni. Costa due query
+     * aggregate, senza leggere né serializzare i viaggi.
+     */
+    public String getAllTripsETag() {
+        return "trips-" + tripRepository.findVersionStamp().asTag()
+                + "-" + bookingRepository.findVersionStamp().asTag();
+    }
+
+    public String getTripETag(Long id) {
+        Long version = tripRepository.findVersionById(id)
+                .orElseThrow(() -> new EntityNotFoundException("Trip not found with id: " + id));
+        return "trip-" + id + "." + version + "-" + bookingRepository.findVersionStampByTripId(id).asTag();
+    }
+
     public Trip getTripById(Long id) {
         return tripRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException("Trip not found with id: " + id));
@@ -57,16 +152,7 @@ public class TripService {
         Trip trip = tripRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException("Trip not found with id: " + id));
 
-        TripResponseDTO tripDTO = new TripResponseDTO();
-        BeanUtils.copyProperties(trip, tripDTO);
-
-        List<Booking> tripBookings = trip.getBookings();
-        List<Long> employeeIds = tripBookings.stream()
-                .map(booking -> booking.getEmployee().getId())
-                .collect(Collectors.toList());
-
-        tripDTO.setEmployeeIds(employeeIds);
-        return tripDTO;
+        return tripMapper.toResponse(trip, bookingRepository.findEmployeeIdsByTripId(id));
     }
 
     public IdResponse createTrip(TripRequestDTO trip) {
@@ -74,32 +160,46 @@ public class TripService {
             throw new IllegalArgumentException("Start date must be before end date");
         }
 
-        Trip newTrip = new Trip();
-        BeanUtils.copyProperties(trip, newTrip);
-        return new IdResponse(tripRepository.save(newTrip).getId());
+        Trip newTrip = tripMapper.toEntity(trip);
+        Long id = tripRepository.save(newTrip).getId();
+        seatReservationEngine.changeCapacityAfterCommit(id, null, newTrip.getCapacity(), () -> 0L);
+        searchIndex.indexAfterCommit(newTrip);
+        tripIntervalIndex.putAfterCommit(newTrip);
+        return new IdResponse(id);
     }
 
-    public Trip updateTrip(Long id, Trip tripDetails) {
+    public Trip updateTrip(Long id, TripUpdateRequestDTO tripDetails) {
         if (tripDetails.getStartDate().isAfter(tripDetails.getEndDate())) {
             throw new IllegalArgumentException("Start date must be before end date");
         }
 
         Trip trip = getTripById(id);
+        Integer previousCapacity = trip.getCapacity();
         trip.setDescription(tripDetails.getDescription());
         trip.setStartDate(tripDetails.getStartDate());
         trip.setEndDate(tripDetails.getEndDate());
+        if (tripDetails.isCapacityProvided()) {
+            trip.setCapacity(tripDetails.getCapacity());
+        }
+        seatReservationEngine.changeCapacityAfterCommit(id, previousCapacity, trip.getCapacity(),
+                () -> bookingRepository.countByTripId(id));
+        searchIndex.indexAfterCommit(trip);
+        tripIntervalIndex.putAfterCommit(trip);
+        employeeScheduleIndex.moveTripAfterCommit(trip);
         return tripRepository.save(trip);
     }
 
     public void deleteTrip(Long id) {
         Trip trip = getTripById(id);
         tripRepository.delete(trip);
+        seatReservationEngine.removeAfterCommit(id);
+        searchIndex.removeTripAfterCommit(id);
+        tripIntervalIndex.removeAfterCommit(id);
+        employeeScheduleIndex.removeTripAfterCommit(id);
     }
 
+    // Una sola query con join, invece di un viaggio caricato per ogni prenotazione
     public List<Trip> getEmployeeTrips(long employeeId) {
-
-        List<Booking> bookings = bookingRepository.findByEmployeeId(employeeId);
-        return bookings.stream().map(Booking::getTrip).toList();
-
+        return bookingRepository.findTripsByEmployeeId(employeeId);
     }
 }
\ No newline at end of file
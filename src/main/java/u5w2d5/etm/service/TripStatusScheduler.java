@@ -0,0 +1,181 @@
+package u5w2d5.etm.service;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongBinaryOperator;
+
+import org.postgresql.PGConnection;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import u5w2d5.etm.model.Trip;
+import u5w2d5.etm.model.TripStatus;
+import u5w2d5.etm.repository.TripRepository;
+import u5w2d5.etm.repository.projection.IdRange;
+
+/**
+ * Aggiorna periodicamente lo stato dei viaggi in base alle date:
+ * - SCHEDULED o IN_PROGRESS finiti prima di oggi -> COMPLETED
+ * - SCHEDULED con oggi compreso tra inizio e fine -> IN_PROGRESS
+ * I viaggi CANCELLED non vengono mai toccati.
+ *
+ * Funzionamento:
+ * - Nessuna entità viene caricata: per ogni transizione una query legge l'id
+ * minimo e massimo dei viaggi da aggiornare (indice idx_trips_status_dates) e
+ * poi UPDATE ... WHERE a blocchi di id, ognuno nella propria transazione, così
+ * i lock sulle righe durano poco.
+ * - Gli UPDATE incrementano la versione (cambia l'ETag) e alla fine la regione
+ * "trips" della cache di secondo livello viene svuotata.
+ * - Su PostgreSQL ogni blocco prende un advisory lock di transazione
+ * (pg_try_advisory_xact_lock): con più istanze dell'applicazione un blocco
+ * viene aggiornato da una sola, le altre saltano il resto del giro. Sugli altri
+ * database (H2 nei test) il lock non c'è.
+ *
+ * Metriche esposte:
+ * - etm.trips.status.job (timer, tag outcome=completed|skipped)
+ * - etm.trips.status.transitions (counter delle righe aggiornate, tag status)
+ */
+@Component
+@Slf4j
+public class TripStatusScheduler {
+
+    // Chiave dell'advisory lock: un valore fisso, uguale su tutte le istanze
+    static final long LOCK_KEY = 0x45544d5f54524950L;
+
+    private static final List<TripStatus> NOT_ENDED = List.of(TripStatus.SCHEDULED, TripStatus.IN_PROGRESS);
+    private static final List<TripStatus> NOT_STARTED = List.of(TripStatus.SCHEDULED);
+
+    private final TripRepository tripRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+    private final int chunkSize;
+    private final Timer completedTimer;
+    private final Timer skippedTimer;
+    private final Counter startedRows;
+    private final Counter completedRows;
+
+    public TripStatusScheduler(TripRepository tripRepository, JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate, EntityManagerFactory entityManagerFactory,
+            MeterRegistry meterRegistry, @Value("${etm.trip-status.chunk-size:1000}") int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("etm.trip-status.chunk-size must be a positive number");
+        }
+        this.tripRepository = tripRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.entityManagerFactory = entityManagerFactory;
+        this.chunkSize = chunkSize;
+
+        this.completedTimer = Timer.builder("etm.trips.status.job")
+                .tag("outcome", "completed")
+                .register(meterRegistry);
+        this.skippedTimer = Timer.builder("etm.trips.status.job")
+                .tag("outcome", "skipped")
+                .register(meterRegistry);
+        this.startedRows = Counter.builder("etm.trips.status.transitions")
+                .tag("status", TripStatus.IN_PROGRESS.name())
+                .register(meterRegistry);
+        this.completedRows = Counter.builder("etm.trips.status.transitions")
+                .tag("status", TripStatus.COMPLETED.name())
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${etm.trip-status.interval-ms:3600000}",
+            initialDelayString = "${etm.trip-status.initial-delay-ms:60000}")
+    public void run() {
+        updateStatuses(LocalDate.now());
+    }
+
+    /**
+     * @return true se il job è stato eseguito, false se un'altra istanza aveva
+     *         già il lock
+     */
+    public boolean updateStatuses(LocalDate today) {
+        long start = System.nanoTime();
+        boolean ran = transition(today, new Run(isPostgres()));
+        (ran ? completedTimer : skippedTimer).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (!ran) {
+            log.debug("Aggiornamento dello stato dei viaggi già in corso su un'altra istanza");
+        }
+        return ran;
+    }
+
+    // Un giro del job: database con advisory lock e lock trovato occupato a metà
+    private static final class Run {
+
+        private final boolean postgres;
+        private boolean skipped;
+
+        Run(boolean postgres) {
+            this.postgres = postgres;
+        }
+    }
+
+    private boolean transition(LocalDate today, Run run) {
+        long start = System.nanoTime();
+        // Prima i completati: un viaggio SCHEDULED già finito passa direttamente a
+        // COMPLETED senza fermarsi in IN_PROGRESS
+        int completed = updateInChunks(run, tripRepository.findIdRangeEndedBefore(NOT_ENDED, today),
+                (firstId, lastId) -> tripRepository.updateStatusEndedBefore(TripStatus.COMPLETED, NOT_ENDED,
+                        today, firstId, lastId));
+        completedRows.increment(completed);
+        int started = updateInChunks(run, tripRepository.findIdRangeActiveOn(NOT_STARTED, today),
+                (firstId, lastId) -> tripRepository.updateStatusActiveOn(TripStatus.IN_PROGRESS, NOT_STARTED,
+                        today, firstId, lastId));
+        startedRows.increment(started);
+
+        if (completed + started > 0) {
+            // Gli UPDATE massivi non passano dalle entità in cache: le copie dei
+            // viaggi aggiornati non sono più valide
+            entityManagerFactory.getCache().evict(Trip.class);
+            log.info("Stato dei viaggi aggiornato: {} in corso, {} completati in {} ms", started, completed,
+                    (System.nanoTime() - start) / 1_000_000);
+        }
+        return !run.skipped;
+    }
+
+    // Ogni blocco prende l'advisory lock di transazione sulla stessa connessione
+    // dell'UPDATE e lo rilascia al commit: il job non tiene una seconda connessione
+    // del pool mentre aspetta quelle dei blocchi. Se il lock è di un'altra istanza
+    // il giro si ferma; i blocchi già aggiornati restano, gli UPDATE sono idempotenti
+    private int updateInChunks(Run run, IdRange range, LongBinaryOperator update) {
+        if (run.skipped || range == null || range.isEmpty()) {
+            return 0;
+        }
+        int rows = 0;
+        for (long firstId = range.getMinId(); firstId <= range.getMaxId(); firstId += chunkSize) {
+            long first = firstId;
+            long last = Math.min(firstId + chunkSize - 1, range.getMaxId());
+            Long updated = transactionTemplate.execute(status -> {
+                if (run.postgres && !Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                        "select pg_try_advisory_xact_lock(?)", Boolean.class, LOCK_KEY))) {
+                    return null;
+                }
+                return update.applyAsLong(first, last);
+            });
+            if (updated == null) {
+                run.skipped = true;
+                break;
+            }
+            rows += updated.intValue();
+        }
+        return rows;
+    }
+
+    private boolean isPostgres() {
+        Boolean postgres = jdbcTemplate.execute(
+                (ConnectionCallback<Boolean>) connection -> connection.isWrapperFor(PGConnection.class));
+        return Boolean.TRUE.equals(postgres);
+    }
+}
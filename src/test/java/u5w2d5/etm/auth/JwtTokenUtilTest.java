@@ -0,0 +1,45 @@
+package u5w2d5.etm.auth;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+
+/**
+ * Un token firmato correttamente ma senza "exp" deve essere rifiutato come
+ * token non valido, non far fallire il filtro.
+ */
+class JwtTokenUtilTest {
+
+    private static final String SECRET = "una-chiave-di-test-lunga-almeno-trentadue-byte";
+
+    @Test
+    void rejectsSignedTokenWithoutExpiration() {
+        JwtTokenUtil jwtTokenUtil = new JwtTokenUtil();
+        jwtTokenUtil.setSecretKey(SECRET);
+        jwtTokenUtil.setExpirationTime(60_000);
+
+        String token = Jwts.builder()
+                .setSubject("mario")
+                .setIssuedAt(new Date())
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)), SignatureAlgorithm.HS256)
+                .compact();
+
+        assertThatThrownBy(() -> jwtTokenUtil.verifyToken(token)).isInstanceOf(JwtException.class);
+
+        String valid = jwtTokenUtil.generateToken(
+                new User("mario", "", List.of(new SimpleGrantedAuthority("ROLE_USER"))), 0L);
+        assertThat(jwtTokenUtil.verifyToken(valid).getUsername()).isEqualTo("mario");
+    }
+}
@@ -0,0 +1,64 @@
+package u5w2d5.etm.auth;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * La registrazione, singola e massiva, è sotto /api/auth/** (pubblico) ma deve
+ * restare riservata agli amministratori.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("embedded")
+class RegistrationSecurityTest {
+
+    private static final String USER_JSON = """
+            {"firstName":"Mario","lastName":"Rossi","email":"mario.rossi@security.test","password":"segreto1"}
+            """;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void anonymousCannotRegister() throws Exception {
+        mockMvc.perform(post("/api/auth/register/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[" + USER_JSON + "]"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(post("/api/auth/register")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(USER_JSON))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    @WithMockUser(roles = "USER")
+    void userCannotRegister() throws Exception {
+        mockMvc.perform(post("/api/auth/register/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[" + USER_JSON + "]"))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(post("/api/auth/register")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(USER_JSON))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void adminCanRegisterInBulk() throws Exception {
+        mockMvc.perform(post("/api/auth/register/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+                .andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,111 @@
+package u5w2d5.etm.auth.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+
+import u5w2d5.etm.auth.model.AppUser;
+import u5w2d5.etm.auth.model.AppUserRole;
+import u5w2d5.etm.auth.repository.AppUserRepository;
+import u5w2d5.etm.auth.response.BulkRegistrationResponse;
+import u5w2d5.etm.auth.response.BulkRegistrationRowResult;
+import u5w2d5.etm.auth.response.BulkRegistrationRowResult.Status;
+
+/**
+ * Ogni riga della registrazione massiva riceve il proprio esito e gli utenti
+ * creati sono equivalenti a quelli di {@link AppUserService#registerUser}.
+ */
+@SpringBootTest
+@ActiveProfiles("embedded")
+class AppUserBulkRegistrationServiceTest {
+
+    private static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+
+    @Autowired
+    private AppUserBulkRegistrationService appUserBulkRegistrationService;
+
+    @Autowired
+    private AppUserRepository appUserRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Test
+    void csvRowsGetOneResultEach() throws Exception {
+        String csv = """
+                firstName,lastName,email,username,password,role
+                Mario,Rossi,mario.rossi@bulk.test,m.rossi,segreto1,ADMIN
+                Anna,"D'Amico, jr",anna.damico@bulk.test,,,
+                Luca,Bianchi,mario.rossi@bulk.test,l.bianchi,segreto2,
+                Paolo,Verdi,paolo.verdi@bulk.test,p.verdi,segreto3,PILOT
+                Giulia,Neri
+                """;
+
+        BulkRegistrationResponse response = register(csv, TEXT_CSV);
+
+        assertThat(response.getTotal()).isEqualTo(5);
+        assertThat(response.getCreated()).isEqualTo(2);
+        assertThat(response.getRows()).extracting(BulkRegistrationRowResult::getStatus)
+                .containsExactly(Status.CREATED, Status.CREATED, Status.DUPLICATE, Status.INVALID, Status.INVALID);
+
+        AppUser mario = appUserRepository.findByUsername("m.rossi").orElseThrow();
+        assertThat(mario.getId()).isEqualTo(response.getRows().get(0).getId());
+        assertThat(mario.getRoles()).containsExactly(AppUserRole.ROLE_ADMIN);
+        assertThat(passwordEncoder.matches("segreto1", mario.getPassword())).isTrue();
+
+        // Username ricavato dall'email, come in registerUser
+        AppUser anna = appUserRepository.findByUsername("anna.damico").orElseThrow();
+        assertThat(anna.getLastName()).isEqualTo("D'Amico, jr");
+        assertThat(anna.getRoles()).containsExactly(AppUserRole.ROLE_USER);
+    }
+
+    @Test
+    void existingUsersAreReportedOnResubmit() throws Exception {
+        String json = """
+                [
+                  {"firstName": "Sara", "lastName": "Galli", "email": "sara.galli@bulk.test", "password": "segreto4"},
+                  {"firstName": "Marco", "lastName": "Conti", "email": "marco.conti@bulk.test", "role": "SELLER"}
+                ]
+                """;
+
+        BulkRegistrationResponse first = register(json, MediaType.APPLICATION_JSON);
+        BulkRegistrationResponse second = register(json, MediaType.APPLICATION_JSON);
+
+        assertThat(first.getCreated()).isEqualTo(2);
+        assertThat(second.getCreated()).isZero();
+        assertThat(second.getRows()).extracting(BulkRegistrationRowResult::getStatus)
+                .containsOnly(Status.ALREADY_EXISTS);
+        assertThat(appUserRepository.findByUsername("marco.conti").orElseThrow().getRoles())
+                .containsExactly(AppUserRole.ROLE_SELLER);
+    }
+
+    @Test
+    void nullJsonElementIsOneInvalidRow() throws Exception {
+        String json = """
+                [
+                  null,
+                  {"firstName": {"nome": "Luigi"}, "lastName": "Greco", "email": "luigi.greco@bulk.test"},
+                  {"firstName": "Elena", "lastName": "Fontana", "email": "elena.fontana@bulk.test"}
+                ]
+                """;
+
+        BulkRegistrationResponse response = register(json, MediaType.APPLICATION_JSON);
+
+        assertThat(response.getRows()).extracting(BulkRegistrationRowResult::getStatus)
+                .containsExactly(Status.INVALID, Status.INVALID, Status.CREATED);
+        assertThat(appUserRepository.findByUsername("elena.fontana")).isPresent();
+    }
+
+    private BulkRegistrationResponse register(String body, MediaType contentType) throws Exception {
+        return appUserBulkRegistrationService.register(
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), contentType);
+    }
+}
@@ -0,0 +1,93 @@
+package u5w2d5.etm.auth.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import u5w2d5.etm.auth.JwtClaims;
+import u5w2d5.etm.auth.JwtTokenUtil;
+import u5w2d5.etm.auth.repository.AppUserRepository;
+import u5w2d5.etm.auth.repository.projection.UserTokenVersion;
+
+/**
+ * Il refresh in background non deve riattivare token revocati mentre la sua
+ * query era in corso.
+ */
+class TokenVersionRegistryTest {
+
+    private record Row(String username, long tokenVersion) implements UserTokenVersion {
+
+        @Override
+        public String getUsername() {
+            return username;
+        }
+
+        @Override
+        public long getTokenVersion() {
+            return tokenVersion;
+        }
+    }
+
+    @Test
+    void revocationDuringRefreshIsKept() {
+        AppUserRepository appUserRepository = mock(AppUserRepository.class);
+        JwtTokenUtil jwtTokenUtil = new JwtTokenUtil();
+        jwtTokenUtil.setStateless(true);
+        TokenVersionRegistry registry = new TokenVersionRegistry(appUserRepository, jwtTokenUtil);
+
+        when(appUserRepository.findAllTokenVersions()).thenReturn(List.of(new Row("mario", 0)));
+        registry.refresh();
+        assertThat(registry.isCurrent(claims("mario", 0))).isTrue();
+
+        // La password cambia mentre il refresh sta leggendo la versione 0
+        when(appUserRepository.findAllTokenVersions()).thenAnswer(invocation -> {
+            registry.update("mario", 1);
+            return List.of(new Row("mario", 0), new Row("anna", 0));
+        });
+        registry.refresh();
+
+        assertThat(registry.isCurrent(claims("mario", 0))).isFalse();
+        assertThat(registry.isCurrent(claims("mario", 1))).isTrue();
+        assertThat(registry.isCurrent(claims("anna", 0))).isTrue();
+
+        // Utente cancellato su un altro nodo
+        when(appUserRepository.findAllTokenVersions()).thenReturn(List.of(new Row("mario", 1)));
+        registry.refresh();
+        assertThat(registry.isCurrent(claims("anna", 0))).isFalse();
+    }
+
+    @Test
+    void loginDuringRefreshIsKeptAndVersionsAreLoadedAtStartup() {
+        AppUserRepository appUserRepository = mock(AppUserRepository.class);
+        JwtTokenUtil jwtTokenUtil = new JwtTokenUtil();
+        jwtTokenUtil.setStateless(true);
+        TokenVersionRegistry registry = new TokenVersionRegistry(appUserRepository, jwtTokenUtil);
+
+        when(appUserRepository.findAllTokenVersions()).thenReturn(List.of(new Row("mario", 0)));
+        registry.afterSingletonsInstantiated();
+        assertThat(registry.isCurrent(claims("mario", 0))).isTrue();
+
+        // Nuovo utente registrato dopo che la query ha letto la tabella
+        when(appUserRepository.findAllTokenVersions()).thenAnswer(invocation -> {
+            registry.update("luca", 0);
+            return List.of(new Row("mario", 0));
+        });
+        registry.refresh();
+        assertThat(registry.isCurrent(claims("luca", 0))).isTrue();
+
+        // Al refresh successivo la fotografia è più recente: se manca, l'utente è stato cancellato
+        when(appUserRepository.findAllTokenVersions()).thenReturn(List.of(new Row("mario", 0)));
+        registry.refresh();
+        assertThat(registry.isCurrent(claims("luca", 0))).isFalse();
+    }
+
+    private static JwtClaims claims(String username, long tokenVersion) {
+        return new JwtClaims(username, List.of("ROLE_USER"), Instant.now(), Instant.now().plusSeconds(60),
+                tokenVersion);
+    }
+}
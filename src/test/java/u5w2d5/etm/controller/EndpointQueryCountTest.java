@@ -0,0 +1,113 @@
+package u5w2d5.etm.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static u5w2d5.etm.metrics.QueryCountAssertions.maxQueries;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import u5w2d5.etm.repository.BookingRepository;
+import u5w2d5.etm.repository.EmployeeRepository;
+import u5w2d5.etm.repository.TripRepository;
+
+/**
+ * Numero massimo di statement SQL per ogni endpoint di lettura, sui dati creati
+ * dai runner all'avvio. Il conteggio include le query aggregate dell'ETag e non
+ * deve dipendere dal numero di righe: un N+1 fa fallire il test.
+ */
+@SpringBootTest(properties = "etm.query-detector.headers=true")
+@AutoConfigureMockMvc
+@ActiveProfiles("embedded")
+@WithMockUser(roles = "ADMIN")
+class EndpointQueryCountTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private TripRepository tripRepository;
+
+    @Autowired
+    private EmployeeRepository employeeRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    // Con una sola riga per tabella un N+1 costerebbe una query in più e
+    // resterebbe sotto i limiti: i runner devono aver creato più righe dei limiti
+    @BeforeEach
+    void requireRunnerData() {
+        assertThat(tripRepository.count()).isGreaterThan(5);
+        assertThat(employeeRepository.count()).isGreaterThan(5);
+        assertThat(bookingRepository.count()).isGreaterThan(5);
+    }
+
+    @Test
+    void getAllTrips() throws Exception {
+        // ETag (2) + viaggi + roster
+        mockMvc.perform(get("/api/trips"))
+                .andExpect(status().isOk())
+                .andExpect(maxQueries(4));
+    }
+
+    @Test
+    void getTripsByPeriodAndStatus() throws Exception {
+        // ETag (2) + viaggi (dall'albero degli intervalli o dall'indice) + roster
+        mockMvc.perform(get("/api/trips").param("from", "2000-01-01").param("to", "2100-12-31"))
+                .andExpect(status().isOk())
+                .andExpect(maxQueries(4));
+        mockMvc.perform(get("/api/trips").param("status", "SCHEDULED").param("from", "2000-01-01"))
+                .andExpect(status().isOk())
+                .andExpect(maxQueries(4));
+    }
+
+    @Test
+    void getTripById() throws Exception {
+        Long id = tripRepository.findAll().get(0).getId();
+        mockMvc.perform(get("/api/trips/{id}", id))
+                .andExpect(status().isOk())
+                .andExpect(maxQueries(4));
+    }
+
+    @Test
+    void getAllEmployees() throws Exception {
+        // ETag (2) + pagina + viaggi prenotati
+        mockMvc.perform(get("/api/employees"))
+                .andExpect(status().isOk())
+                .andExpect(maxQueries(4));
+    }
+
+    @Test
+    void getEmployeeById() throws Exception {
+        Long id = employeeRepository.findAll().get(0).getId();
+        // ETag (2) + dipendente (+ ruoli) + viaggi prenotati
+        mockMvc.perform(get("/api/employees/{id}", id))
+                .andExpect(status().isOk())
+                .andExpect(maxQueries(5));
+    }
+
+    @Test
+    void getAllBookings() throws Exception {
+        // ETag + prenotazioni, senza caricare dipendenti e viaggi
+        mockMvc.perform(get("/api/bookings"))
+                .andExpect(status().isOk())
+                .andExpect(maxQueries(2));
+    }
+
+    @Test
+    void getBookingById() throws Exception {
+        Long id = bookingRepository.findAll().get(0).getId();
+        // ETag + prenotazione con dipendente e viaggio (+ ruoli)
+        mockMvc.perform(get("/api/bookings/{id}", id))
+                .andExpect(status().isOk())
+                .andExpect(maxQueries(3));
+    }
+}
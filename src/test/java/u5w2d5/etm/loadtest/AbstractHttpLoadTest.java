@@ -0,0 +1,70 @@
+package u5w2d5.etm.loadtest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import lombok.extern.slf4j.Slf4j;
+import u5w2d5.etm.auth.model.AppUserRole;
+import u5w2d5.etm.auth.service.AppUserService;
+
+/**
+ * Prova di carico sui controller reali, con l'applicazione avviata sul profilo
+ * "embedded" (H2 in modalità PostgreSQL). Le sottoclassi scelgono la
+ * configurazione da provare; nessuna fa parte della build normale:
+ *
+ * mvn test -Dtest='*LoadTest' -Detm.loadtest=true
+ *
+ * Parametri opzionali: etm.loadtest.users, etm.loadtest.duration,
+ * etm.loadtest.mix (vedi {@link LoadGenerator.Settings}). Il report viene
+ * scritto in target/loadtest/results-&lt;label&gt;.json.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("embedded")
+@EnabledIfSystemProperty(named = "etm.loadtest", matches = "true")
+@Slf4j
+abstract class AbstractHttpLoadTest {
+
+    private static final String USERNAME = "loadtest";
+    private static final String PASSWORD = "loadtest";
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private AppUserService appUserService;
+
+    protected abstract String label();
+
+    @Test
+    void replayMix() throws Exception {
+        appUserService.registerUser("Load", "Test", USERNAME, "loadtest@example.com", PASSWORD,
+                Set.of(AppUserRole.ROLE_ADMIN));
+
+        LoadGenerator.Settings settings = LoadGenerator.Settings.fromSystemProperties(
+                "http://localhost:" + port, USERNAME, PASSWORD);
+        LoadReport report = new LoadGenerator(settings).run();
+
+        Path output = resultFile(label());
+        report.writeTo(output, label(), settings);
+        log.info("Load test '{}' completed, report written to {}{}", label(), output, report.toTable());
+        afterRun(report);
+
+        assertThat(report.getTotalRequests()).isPositive();
+    }
+
+    protected void afterRun(LoadReport report) throws Exception {
+    }
+
+    protected static Path resultFile(String label) {
+        return Path.of("target", "loadtest", "results-" + label + ".json");
+    }
+}
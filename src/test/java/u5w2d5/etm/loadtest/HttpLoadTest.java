@@ -0,0 +1,16 @@
+package u5w2d5.etm.loadtest;
+
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+/**
+ * Prova di carico con la configurazione di default dell'applicazione; il nome
+ * del report si sceglie con etm.loadtest.label.
+ */
+@EnabledIfSystemProperty(named = "etm.loadtest", matches = "true")
+class HttpLoadTest extends AbstractHttpLoadTest {
+
+    @Override
+    protected String label() {
+        return System.getProperty("etm.loadtest.label", "default");
+    }
+}
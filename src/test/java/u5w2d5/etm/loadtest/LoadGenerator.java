@@ -0,0 +1,326 @@
+package u5w2d5.etm.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Generatore di carico HTTP per le API dell'applicazione.
+ *
+ * Ogni utente simulato è un virtual thread: fa login su /api/auth/login e poi,
+ * fino alla scadenza, ripete un mix pesato di letture e scritture. Le latenze
+ * vengono raccolte per endpoint in un {@link LoadReport}.
+ *
+ * Può essere lanciato anche contro un server già avviato:
+ * java ... LoadGenerator http://localhost:8080 username password
+ * con le stesse system property di {@link Settings#fromSystemProperties}.
+ */
+public class LoadGenerator {
+
+    public static final String DEFAULT_MIX = "trips.list=30,trips.get=20,employees.list=15,employees.get=10,"
+            + "bookings.list=5,trips.create=5,bookings.create=15";
+
+    private static final int LOGIN_ATTEMPTS = 50;
+    // Login contemporanei: sotto la coda del pool BCrypt (etm.security.bcrypt.queue-capacity),
+    // altrimenti con pochi core tutti gli utenti insieme esauriscono i tentativi
+    private static final int LOGIN_CONCURRENCY = 16;
+
+    public enum Operation {
+        TRIPS_LIST("trips.list", "GET /api/trips"),
+        TRIPS_GET("trips.get", "GET /api/trips/{id}"),
+        EMPLOYEES_LIST("employees.list", "GET /api/employees"),
+        EMPLOYEES_GET("employees.get", "GET /api/employees/{id}"),
+        BOOKINGS_LIST("bookings.list", "GET /api/bookings"),
+        TRIPS_CREATE("trips.create", "POST /api/trips"),
+        BOOKINGS_CREATE("bookings.create", "POST /api/bookings");
+
+        private final String key;
+        private final String endpoint;
+
+        Operation(String key, String endpoint) {
+            this.key = key;
+            this.endpoint = endpoint;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getEndpoint() {
+            return endpoint;
+        }
+
+        public static Operation fromKey(String key) {
+            for (Operation operation : values()) {
+                if (operation.key.equals(key)) {
+                    return operation;
+                }
+            }
+            throw new IllegalArgumentException("Unknown operation: " + key);
+        }
+    }
+
+    /**
+     * @param users    utenti simulati, uno per virtual thread
+     * @param duration durata della fase di misura: i login degli utenti avvengono
+     *                 prima e non entrano né nel tempo né nel report
+     * @param mix      peso di ogni operazione
+     */
+    public record Settings(String baseUrl, String username, String password, int users, Duration duration,
+            Map<Operation, Integer> mix) {
+
+        /**
+         * Legge le impostazioni da:
+         * - etm.loadtest.users (default 200)
+         * - etm.loadtest.duration, es. 30s o 2m (default 30s)
+         * - etm.loadtest.mix, es. trips.list=70,bookings.create=30 (default
+         * {@value LoadGenerator#DEFAULT_MIX})
+         */
+        public static Settings fromSystemProperties(String baseUrl, String username, String password) {
+            return new Settings(baseUrl, username, password,
+                    Integer.getInteger("etm.loadtest.users", 200),
+                    Duration.parse("PT" + System.getProperty("etm.loadtest.duration", "30s").toUpperCase()),
+                    parseMix(System.getProperty("etm.loadtest.mix", DEFAULT_MIX)));
+        }
+
+        public String mixAsString() {
+            return mix.entrySet().stream()
+                    .map(entry -> entry.getKey().getKey() + "=" + entry.getValue())
+                    .collect(Collectors.joining(","));
+        }
+    }
+
+    public static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split("=");
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Weight must not be negative: " + entry);
+            }
+            weights.put(Operation.fromKey(parts[0].trim()), weight);
+        }
+        if (weights.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+            throw new IllegalArgumentException("The mix must contain at least one operation");
+        }
+        return weights;
+    }
+
+    private final Settings settings;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient httpClient;
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+
+    // Id usati dalle operazioni di dettaglio e di prenotazione: letti all'avvio
+    // e arricchiti dai viaggi creati durante la prova
+    private final List<Long> tripIds = Collections.synchronizedList(new ArrayList<>());
+    private final List<Long> employeeIds = Collections.synchronizedList(new ArrayList<>());
+
+    public LoadGenerator(Settings settings) {
+        this.settings = settings;
+        this.httpClient = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+
+        List<Map.Entry<Operation, Integer>> entries = settings.mix().entrySet().stream()
+                .filter(entry -> entry.getValue() > 0)
+                .toList();
+        operations = new Operation[entries.size()];
+        cumulativeWeights = new int[entries.size()];
+        int total = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            total += entries.get(i).getValue();
+            operations[i] = entries.get(i).getKey();
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    public LoadReport run() throws Exception {
+        LoadReport report = new LoadReport();
+        // I login (BCrypt) si fanno tutti prima della misura, in parallelo: la
+        // finestra parte solo quando ogni utente ha il suo token
+        LoadReport logins = new LoadReport();
+        seedIds(login(logins));
+        List<String> tokens = new ArrayList<>(settings.users());
+        Semaphore loginPermits = new Semaphore(LOGIN_CONCURRENCY);
+        try (ExecutorService users = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<String>> pending = new ArrayList<>(settings.users());
+            for (int i = 0; i < settings.users(); i++) {
+                pending.add(users.submit(() -> {
+                    loginPermits.acquire();
+                    try {
+                        return login(logins);
+                    } finally {
+                        loginPermits.release();
+                    }
+                }));
+            }
+            for (Future<String> token : pending) {
+                tokens.add(token.get());
+            }
+        }
+
+        long start = System.nanoTime();
+        long deadline = start + settings.duration().toNanos();
+        try (ExecutorService users = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String token : tokens) {
+                users.submit(() -> {
+                    runUser(report, token, deadline);
+                    return null;
+                });
+            }
+        }
+        report.setElapsed(Duration.ofNanos(System.nanoTime() - start));
+        return report;
+    }
+
+    private void runUser(LoadReport report, String token, long deadline) throws Exception {
+        while (System.nanoTime() < deadline) {
+            Operation operation = nextOperation();
+            long start = System.nanoTime();
+            int status;
+            try {
+                HttpResponse<byte[]> response = httpClient.send(request(operation, token),
+                        HttpResponse.BodyHandlers.ofByteArray());
+                status = response.statusCode();
+                if (operation == Operation.TRIPS_CREATE && status == 201) {
+                    tripIds.add(objectMapper.readTree(response.body()).get("id").asLong());
+                }
+            } catch (IOException e) {
+                status = 0;
+            }
+            report.record(operation.getEndpoint(), System.nanoTime() - start, status);
+        }
+    }
+
+    // Il login passa dal pool BCrypt: se è saturo (503) si riprova
+    private String login(LoadReport report) throws Exception {
+        String body = objectMapper.writeValueAsString(
+                Map.of("username", settings.username(), "password", settings.password()));
+        for (int attempt = 0; attempt < LOGIN_ATTEMPTS; attempt++) {
+            long start = System.nanoTime();
+            HttpResponse<byte[]> response = httpClient.send(HttpRequest.newBuilder(uri("/api/auth/login"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build(), HttpResponse.BodyHandlers.ofByteArray());
+            report.record("POST /api/auth/login", System.nanoTime() - start, response.statusCode());
+            if (response.statusCode() == 200) {
+                return objectMapper.readTree(response.body()).get("token").asText();
+            }
+            if (response.statusCode() != 503) {
+                throw new IllegalStateException("Login failed with status " + response.statusCode());
+            }
+            Thread.sleep(100);
+        }
+        throw new IllegalStateException("Login still rejected after " + LOGIN_ATTEMPTS + " attempts");
+    }
+
+    private void seedIds(String token) throws Exception {
+        for (JsonNode trip : getJson("/api/trips", token)) {
+            tripIds.add(trip.get("id").asLong());
+        }
+        for (JsonNode employee : getJson("/api/employees?limit=1000", token)) {
+            employeeIds.add(employee.get("id").asLong());
+        }
+    }
+
+    private JsonNode getJson(String path, String token) throws Exception {
+        HttpResponse<byte[]> response = httpClient.send(get(path, token), HttpResponse.BodyHandlers.ofByteArray());
+        return objectMapper.readTree(response.body());
+    }
+
+    private Operation nextOperation() {
+        int value = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (value < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    private HttpRequest request(Operation operation, String token) throws IOException {
+        return switch (operation) {
+            case TRIPS_LIST -> get("/api/trips", token);
+            case TRIPS_GET -> get("/api/trips/" + randomId(tripIds), token);
+            case EMPLOYEES_LIST -> get("/api/employees", token);
+            case EMPLOYEES_GET -> get("/api/employees/" + randomId(employeeIds), token);
+            case BOOKINGS_LIST -> get("/api/bookings", token);
+            case TRIPS_CREATE -> post("/api/trips", token, newTrip());
+            case BOOKINGS_CREATE -> post("/api/bookings", token, Map.of(
+                    "tripId", randomId(tripIds),
+                    "employeeId", randomId(employeeIds),
+                    "notes", "load test"));
+        };
+    }
+
+    private Map<String, Object> newTrip() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        LocalDate startDate = LocalDate.now().plusDays(random.nextInt(1, 365));
+        Map<String, Object> trip = new LinkedHashMap<>();
+        trip.put("description", "Trasferta di carico " + random.nextInt(1_000_000));
+        trip.put("startDate", startDate.toString());
+        trip.put("endDate", startDate.plusDays(random.nextInt(1, 10)).toString());
+        trip.put("status", "SCHEDULED");
+        return trip;
+    }
+
+    private static long randomId(List<Long> ids) {
+        synchronized (ids) {
+            return ids.isEmpty() ? 1L : ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+        }
+    }
+
+    private HttpRequest get(String path, String token) {
+        return HttpRequest.newBuilder(uri(path))
+                .header("Authorization", "Bearer " + token)
+                .GET()
+                .build();
+    }
+
+    private HttpRequest post(String path, String token, Object body) throws IOException {
+        return HttpRequest.newBuilder(uri(path))
+                .header("Authorization", "Bearer " + token)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                .build();
+    }
+
+    private URI uri(String path) {
+        return URI.create(settings.baseUrl() + path);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 3) {
+            System.err.println("Usage: LoadGenerator <base-url> <username> <password>");
+            System.exit(1);
+        }
+        Settings settings = Settings.fromSystemProperties(args[0], args[1], args[2]);
+        LoadReport report = new LoadGenerator(settings).run();
+        System.out.println(report.toTable());
+        report.writeTo(Path.of(System.getProperty("etm.loadtest.output", "target/loadtest/results.json")),
+                System.getProperty("etm.loadtest.label", "external"), settings);
+    }
+}
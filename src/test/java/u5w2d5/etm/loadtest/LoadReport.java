@@ -0,0 +1,125 @@
+package u5w2d5.etm.loadtest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Latenze raccolte dal {@link LoadGenerator}, divise per endpoint, e il loro
+ * riepilogo: throughput, p50/p95/p99 e conteggio degli status HTTP.
+ */
+public class LoadReport {
+
+    private final Map<String, EndpointStats> endpoints = new ConcurrentHashMap<>();
+    private volatile Duration elapsed = Duration.ZERO;
+
+    public void record(String endpoint, long latencyNanos, int status) {
+        endpoints.computeIfAbsent(endpoint, key -> new EndpointStats()).add(latencyNanos, status);
+    }
+
+    public void setElapsed(Duration elapsed) {
+        this.elapsed = elapsed;
+    }
+
+    public long getTotalRequests() {
+        return summaries().stream().mapToLong(EndpointSummary::requests).sum();
+    }
+
+    public long getTotalErrors() {
+        return summaries().stream().mapToLong(EndpointSummary::errors).sum();
+    }
+
+    public List<EndpointSummary> summaries() {
+        double seconds = Math.max(elapsed.toNanos() / 1e9, 1e-9);
+        return endpoints.entrySet().stream()
+                .map(entry -> entry.getValue().summarize(entry.getKey(), seconds))
+                .sorted(Comparator.comparing(EndpointSummary::endpoint))
+                .toList();
+    }
+
+    /**
+     * Scrive il report in JSON, con le impostazioni della prova, così che più
+     * esecuzioni possano essere confrontate.
+     */
+    public void writeTo(Path file, String label, LoadGenerator.Settings settings) throws IOException {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("label", label);
+        json.put("timestamp", Instant.now().toString());
+        json.put("users", settings.users());
+        json.put("durationSeconds", elapsed.toMillis() / 1000.0);
+        json.put("mix", settings.mixAsString());
+        json.put("totalRequests", getTotalRequests());
+        json.put("totalErrors", getTotalErrors());
+        json.put("throughput", getTotalRequests() / Math.max(elapsed.toNanos() / 1e9, 1e-9));
+        json.put("endpoints", summaries());
+
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file.toFile(), json);
+    }
+
+    public String toTable() {
+        StringBuilder table = new StringBuilder(String.format("%n%-28s %9s %7s %10s %9s %9s %9s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms"));
+        for (EndpointSummary summary : summaries()) {
+            table.append(String.format("%-28s %9d %7d %10.1f %9.2f %9.2f %9.2f%n",
+                    summary.endpoint(), summary.requests(), summary.errors(), summary.throughput(),
+                    summary.p50Ms(), summary.p95Ms(), summary.p99Ms()));
+        }
+        return table.toString();
+    }
+
+    public record EndpointSummary(String endpoint, long requests, long errors, double throughput,
+            double p50Ms, double p95Ms, double p99Ms, double maxMs, Map<Integer, Long> statuses) {
+    }
+
+    private static class EndpointStats {
+
+        private long[] latencies = new long[1024];
+        private int size;
+        private long errors;
+        private final Map<Integer, Long> statuses = new TreeMap<>();
+
+        synchronized void add(long latencyNanos, int status) {
+            if (size == latencies.length) {
+                latencies = Arrays.copyOf(latencies, size * 2);
+            }
+            latencies[size++] = latencyNanos;
+            statuses.merge(status, 1L, Long::sum);
+            // 0 = errore di rete, nessuna risposta
+            if (status == 0 || status >= 400) {
+                errors++;
+            }
+        }
+
+        synchronized EndpointSummary summarize(String endpoint, double seconds) {
+            long[] sorted = Arrays.copyOf(latencies, size);
+            Arrays.sort(sorted);
+            return new EndpointSummary(endpoint, size, errors, size / seconds,
+                    percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99),
+                    size == 0 ? 0 : sorted[size - 1] / 1e6, new TreeMap<>(statuses));
+        }
+
+        // Nearest-rank: il valore sotto cui cade la percentuale richiesta di campioni
+        private static double percentile(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+            return sorted[Math.max(rank - 1, 0)] / 1e6;
+        }
+    }
+}
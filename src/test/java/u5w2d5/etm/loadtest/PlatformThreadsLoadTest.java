@@ -0,0 +1,20 @@
+package u5w2d5.etm.loadtest;
+
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * Richieste servite dal pool di thread di Tomcat (200 thread), senza bulkhead.
+ * Termine di paragone per {@link VirtualThreadsLoadTest}.
+ */
+@EnabledIfSystemProperty(named = "etm.loadtest", matches = "true")
+@TestPropertySource(properties = "spring.threads.virtual.enabled=false")
+class PlatformThreadsLoadTest extends AbstractHttpLoadTest {
+
+    static final String LABEL = "platform-threads";
+
+    @Override
+    protected String label() {
+        return LABEL;
+    }
+}
@@ -0,0 +1,58 @@
+package u5w2d5.etm.loadtest;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.test.context.TestPropertySource;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Richieste servite da virtual thread, con il bulkhead dimensionato sul pool
+ * Hikari. Se è già presente il report di {@link PlatformThreadsLoadTest}
+ * (stessi parametri), stampa il confronto endpoint per endpoint:
+ *
+ * mvn test -Dtest='*ThreadsLoadTest' -Dsurefire.runOrder=alphabetical -Detm.loadtest=true
+ *     -Detm.loadtest.users=2000
+ */
+@EnabledIfSystemProperty(named = "etm.loadtest", matches = "true")
+@TestPropertySource(properties = "spring.threads.virtual.enabled=true")
+@Slf4j
+class VirtualThreadsLoadTest extends AbstractHttpLoadTest {
+
+    @Override
+    protected String label() {
+        return "virtual-threads";
+    }
+
+    @Override
+    protected void afterRun(LoadReport report) throws Exception {
+        Path baseline = resultFile(PlatformThreadsLoadTest.LABEL);
+        if (!Files.exists(baseline)) {
+            log.warn("No {} report to compare with", PlatformThreadsLoadTest.LABEL);
+            return;
+        }
+
+        JsonNode platform = new ObjectMapper().readTree(baseline.toFile());
+        StringBuilder table = new StringBuilder(String.format("%n%-28s %12s %12s %12s %12s%n",
+                "endpoint", "req/s plat.", "req/s virt.", "p99 plat.", "p99 virt."));
+        for (LoadReport.EndpointSummary summary : report.summaries()) {
+            JsonNode other = null;
+            for (JsonNode endpoint : platform.get("endpoints")) {
+                if (endpoint.get("endpoint").asText().equals(summary.endpoint())) {
+                    other = endpoint;
+                }
+            }
+            table.append(String.format("%-28s %12.1f %12.1f %12.2f %12.2f%n", summary.endpoint(),
+                    other == null ? 0 : other.get("throughput").asDouble(), summary.throughput(),
+                    other == null ? 0 : other.get("p99Ms").asDouble(), summary.p99Ms()));
+        }
+        log.info("Platform vs virtual threads (users={}, total req/s {} vs {}){}",
+                platform.get("users").asInt(), platform.get("throughput").asDouble(),
+                report.summaries().stream().mapToDouble(LoadReport.EndpointSummary::throughput).sum(), table);
+    }
+}
@@ -0,0 +1,54 @@
+package u5w2d5.etm.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.Callable;
+
+import org.springframework.test.web.servlet.ResultMatcher;
+
+/**
+ * Asserzioni sul numero di statement SQL, per fissare nei test il costo in
+ * query di un endpoint o di un metodo e accorgersi subito di un N+1.
+ */
+public final class QueryCountAssertions {
+
+    private QueryCountAssertions() {
+    }
+
+    /**
+     * Per MockMvc: legge l'header X-Query-Count, quindi il contesto di test deve
+     * avere etm.query-detector.headers=true.
+     */
+    public static ResultMatcher maxQueries(int max) {
+        return result -> {
+            String header = result.getResponse().getHeader(RequestStatisticsFilter.QUERY_COUNT_HEADER);
+            assertThat(header)
+                    .as("%s header missing: is etm.query-detector.headers=true?",
+                            RequestStatisticsFilter.QUERY_COUNT_HEADER)
+                    .isNotNull();
+            assertThat(Integer.parseInt(header))
+                    .as("SQL statements for %s %s", result.getRequest().getMethod(),
+                            result.getRequest().getRequestURI())
+                    .isLessThanOrEqualTo(max);
+        };
+    }
+
+    /**
+     * Esegue il codice sul thread corrente e verifica che non esegua più di max
+     * statement. Richiede che Hibernate sia configurato con
+     * {@link HibernateRequestStatisticsConfig}.
+     */
+    public static <T> T assertMaxQueries(int max, Callable<T> action) throws Exception {
+        RequestStatistics statistics = RequestStatistics.start();
+        T result;
+        try {
+            result = action.call();
+        } finally {
+            RequestStatistics.clear();
+        }
+        assertThat(statistics.getStatements())
+                .as("SQL statements (most repeated: %s)", statistics.getMostRepeatedStatement())
+                .isLessThanOrEqualTo(max);
+        return result;
+    }
+}
@@ -0,0 +1,136 @@
+package u5w2d5.etm.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import u5w2d5.etm.auth.service.TokenVersionRegistry;
+import u5w2d5.etm.auth.service.UserDetailsCache;
+import u5w2d5.etm.mapper.BookingMapperImpl;
+import u5w2d5.etm.mapper.EmployeeMapperImpl;
+import u5w2d5.etm.mapper.TripMapperImpl;
+import u5w2d5.etm.model.Employee;
+import u5w2d5.etm.model.Trip;
+import u5w2d5.etm.model.TripStatus;
+import u5w2d5.etm.repository.BookingRepository;
+import u5w2d5.etm.repository.EmployeeRepository;
+import u5w2d5.etm.repository.TripRepository;
+import u5w2d5.etm.request.BookingRequestDTO;
+
+/**
+ * Richieste parallele per la stessa coppia (dipendente, viaggio): solo una
+ * deve andare a buon fine, le altre devono ricevere l'errore di duplicato.
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ BookingService.class, EmployeeService.class, TripService.class, SeatReservationEngine.class,
+        BookingMapperImpl.class, EmployeeMapperImpl.class, TripMapperImpl.class })
+class BookingServiceConcurrencyTest {
+
+    private static final int THREADS = 16;
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private EmployeeRepository employeeRepository;
+
+    @Autowired
+    private TripRepository tripRepository;
+
+    @MockitoBean
+    private ObjectMapper objectMapper;
+
+    @MockitoBean
+    private UserDetailsCache userDetailsCache;
+
+    @MockitoBean
+    private TokenVersionRegistry tokenVersionRegistry;
+
+    @MockitoBean
+    private SearchIndex searchIndex;
+
+    @MockitoBean
+    private TripIntervalIndex tripIntervalIndex;
+
+    // Senza l'indice dei periodi i duplicati arrivano tutti al vincolo unico
+    // uk_bookings_employee_trip, che è quello che il test deve verificare
+    @MockitoBean
+    private EmployeeScheduleIndex employeeScheduleIndex;
+
+    @AfterEach
+    void tearDown() {
+        bookingRepository.deleteAll();
+        tripRepository.deleteAll();
+        employeeRepository.deleteAll();
+    }
+
+    @Test
+    void parallelDuplicateBookingsCreateExactlyOne() throws Exception {
+        Employee employee = new Employee();
+        employee.setUsername("mario.rossi");
+        employee.setFirstName("Mario");
+        employee.setLastName("Rossi");
+        employee.setEmail("mario.rossi@example.com");
+        employee = employeeRepository.save(employee);
+
+        Trip trip = new Trip();
+        trip.setDescription("Viaggio di prova concorrente");
+        trip.setStartDate(LocalDate.now());
+        trip.setEndDate(LocalDate.now().plusDays(2));
+        trip.setStatus(TripStatus.SCHEDULED);
+        trip = tripRepository.save(trip);
+
+        BookingRequestDTO request = new BookingRequestDTO(trip.getId(), employee.getId(), LocalDateTime.now(), null);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> outcomes = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            outcomes.add(executor.submit(() -> {
+                start.await();
+                try {
+                    bookingService.createBooking(request);
+                    return true;
+                } catch (IllegalArgumentException e) {
+                    // Solo la violazione di uk_bookings_employee_trip tradotta in errore di duplicato
+                    assertThat(e).hasMessage("The employee has already booked this trip.");
+                    return false;
+                }
+            }));
+        }
+        start.countDown();
+
+        int created = 0;
+        for (Future<Boolean> outcome : outcomes) {
+            if (outcome.get()) {
+                created++;
+            }
+        }
+        executor.shutdown();
+
+        assertThat(created).isEqualTo(1);
+        assertThat(bookingRepository.count()).isEqualTo(1);
+    }
+}
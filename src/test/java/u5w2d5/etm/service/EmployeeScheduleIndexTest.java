@@ -0,0 +1,134 @@
+package u5w2d5.etm.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import u5w2d5.etm.exception.ConflictException;
+import u5w2d5.etm.model.Trip;
+import u5w2d5.etm.repository.BookingRepository;
+import u5w2d5.etm.repository.projection.BookingInterval;
+import u5w2d5.etm.service.EmployeeScheduleIndex.Reservation;
+import u5w2d5.etm.service.EmployeeScheduleIndex.Reservation.Outcome;
+
+/**
+ * L'indice dei periodi deve accettare e rifiutare le prenotazioni come un
+ * controllo su tutti i viaggi del dipendente, anche con sovrapposizioni già
+ * presenti nei dati e dopo spostamenti e cancellazioni.
+ */
+class EmployeeScheduleIndexTest {
+
+    private static final LocalDate BASE = LocalDate.of(2025, 1, 1);
+
+    private record Row(Long employeeId, Long tripId, LocalDate startDate, LocalDate endDate)
+            implements BookingInterval {
+
+        @Override
+        public Long getEmployeeId() {
+            return employeeId;
+        }
+
+        @Override
+        public Long getTripId() {
+            return tripId;
+        }
+
+        @Override
+        public LocalDate getStartDate() {
+            return startDate;
+        }
+
+        @Override
+        public LocalDate getEndDate() {
+            return endDate;
+        }
+    }
+
+    @Test
+    void rejectsOverlapsAndFollowsTripChanges() {
+        BookingRepository bookingRepository = mock(BookingRepository.class);
+        // Il dipendente 1 ha già due viaggi sovrapposti: 1-10 e 5-6 gennaio
+        when(bookingRepository.findAllIntervals()).thenReturn(List.of(
+                new Row(1L, 10L, BASE, BASE.plusDays(9)),
+                new Row(1L, 11L, BASE.plusDays(4), BASE.plusDays(5)),
+                new Row(2L, 10L, BASE, BASE.plusDays(9))));
+        EmployeeScheduleIndex index = new EmployeeScheduleIndex(bookingRepository);
+        index.rebuild();
+
+        assertThat(index.findOverlap(1L, BASE.plusDays(8), BASE.plusDays(8))).isEqualTo(10L);
+        assertThatThrownBy(() -> index.reserve(1L, trip(12L, BASE.plusDays(9), BASE.plusDays(12))))
+                .isInstanceOf(ConflictException.class);
+        assertThatThrownBy(() -> index.reserve(1L, trip(10L, BASE, BASE.plusDays(9))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(index.tryReserve(1L, 10L, BASE, BASE.plusDays(9), null)).isEqualTo(Reservation.DUPLICATE);
+        assertThat(index.tryReserve(1L, 12L, BASE.plusDays(9), BASE.plusDays(12), null))
+                .isEqualTo(Reservation.overlap(10L));
+        assertThat(index.size(1L)).isEqualTo(2);
+        index.reserve(1L, trip(12L, BASE.plusDays(10), BASE.plusDays(12)));
+        assertThat(index.size(1L)).isEqualTo(3);
+
+        // Il viaggio 10 si sposta a febbraio per entrambi i dipendenti
+        index.moveTripAfterCommit(trip(10L, BASE.plusDays(31), BASE.plusDays(35)));
+        assertThat(index.findOverlap(1L, BASE.plusDays(8), BASE.plusDays(8))).isNull();
+        assertThat(index.findOverlap(2L, BASE.plusDays(33), BASE.plusDays(40))).isEqualTo(10L);
+
+        index.removeTripAfterCommit(10L);
+        assertThat(index.size(1L)).isEqualTo(2);
+        assertThat(index.size(2L)).isZero();
+
+        index.releaseAfterCommit(1L, 11L);
+        index.removeEmployeeAfterCommit(1L);
+        assertThat(index.size(1L)).isZero();
+    }
+
+    @Test
+    void matchesLinearScan() {
+        BookingRepository bookingRepository = mock(BookingRepository.class);
+        when(bookingRepository.findAllIntervals()).thenReturn(List.of());
+        EmployeeScheduleIndex index = new EmployeeScheduleIndex(bookingRepository);
+        index.rebuild();
+
+        Random random = new Random(11);
+        Map<Long, List<Trip>> booked = new HashMap<>();
+        long nextTripId = 1;
+        for (int operation = 0; operation < 5_000; operation++) {
+            long employeeId = random.nextInt(20) + 1;
+            List<Trip> trips = booked.computeIfAbsent(employeeId, id -> new ArrayList<>());
+            if (!trips.isEmpty() && random.nextInt(4) == 0) {
+                Trip trip = trips.remove(random.nextInt(trips.size()));
+                index.release(employeeId, trip.getId());
+                continue;
+            }
+
+            LocalDate start = BASE.plusDays(random.nextInt(365));
+            Trip trip = trip(nextTripId++, start, start.plusDays(random.nextInt(10)));
+            boolean overlaps = trips.stream().anyMatch(other -> !other.getStartDate().isAfter(trip.getEndDate())
+                    && !other.getEndDate().isBefore(trip.getStartDate()));
+            Reservation reservation = index.tryReserve(employeeId, trip.getId(), trip.getStartDate(),
+                    trip.getEndDate(), null);
+            assertThat(reservation.outcome()).isEqualTo(overlaps ? Outcome.OVERLAP : Outcome.OK);
+            if (!overlaps) {
+                trips.add(trip);
+            }
+            assertThat(index.size(employeeId)).isEqualTo(trips.size());
+        }
+    }
+
+    private static Trip trip(long id, LocalDate startDate, LocalDate endDate) {
+        Trip trip = new Trip();
+        trip.setId(id);
+        trip.setStartDate(startDate);
+        trip.setEndDate(endDate);
+        return trip;
+    }
+}
@@ -0,0 +1,131 @@
+package u5w2d5.etm.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import jakarta.persistence.EntityManagerFactory;
+import u5w2d5.etm.auth.service.TokenVersionRegistry;
+import u5w2d5.etm.auth.service.UserDetailsCache;
+import u5w2d5.etm.mapper.EmployeeMapperImpl;
+import u5w2d5.etm.model.Booking;
+import u5w2d5.etm.model.Employee;
+import u5w2d5.etm.model.Trip;
+import u5w2d5.etm.model.TripStatus;
+import u5w2d5.etm.response.EmployeeResponseDTO;
+
+/**
+ * Verifica che il numero di query di {@link EmployeeService#getAllDTO} non
+ * cresca con il numero di dipendenti.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({ EmployeeService.class, EmployeeMapperImpl.class })
+class EmployeeServiceQueryCountTest {
+
+    @Autowired
+    private EmployeeService employeeService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @MockitoBean
+    private UserDetailsCache userDetailsCache;
+
+    @MockitoBean
+    private TokenVersionRegistry tokenVersionRegistry;
+
+    @MockitoBean
+    private SeatReservationEngine seatReservationEngine;
+
+    @MockitoBean
+    private SearchIndex searchIndex;
+
+    @MockitoBean
+    private EmployeeScheduleIndex employeeScheduleIndex;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void queryCountIsConstantAsEmployeesGrow() {
+        populate(10);
+        long small = countQueries(EmployeeService.MAX_PAGE_SIZE);
+
+        populate(200);
+        long large = countQueries(EmployeeService.MAX_PAGE_SIZE);
+
+        assertThat(small).isEqualTo(2);
+        assertThat(large).isEqualTo(small);
+    }
+
+    @Test
+    void pagesFollowTheKeysetCursor() {
+        populate(25);
+        entityManager.clear();
+
+        List<EmployeeResponseDTO> first = employeeService.getAllDTO(null, 10);
+        List<EmployeeResponseDTO> second = employeeService.getAllDTO(first.get(first.size() - 1).getId(), 10);
+
+        assertThat(first).hasSize(10);
+        assertThat(second).hasSize(10);
+        assertThat(second.get(0).getId()).isGreaterThan(first.get(9).getId());
+        assertThat(first).allSatisfy(employee -> assertThat(employee.getTripIds()).hasSize(2));
+    }
+
+    private long countQueries(int limit) {
+        entityManager.clear();
+        statistics.clear();
+        employeeService.getAllDTO(null, limit);
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void populate(int employees) {
+        Trip first = entityManager.persist(trip("Viaggio di prova numero uno"));
+        Trip second = entityManager.persist(trip("Viaggio di prova numero due"));
+        for (int i = 0; i < employees; i++) {
+            Employee employee = new Employee();
+            employee.setUsername("employee" + System.nanoTime() + "_" + i);
+            employee.setFirstName("Nome");
+            employee.setLastName("Cognome");
+            employee.setEmail("employee" + i + "@example.com");
+            entityManager.persist(employee);
+            entityManager.persist(booking(employee, first));
+            entityManager.persist(booking(employee, second));
+        }
+        entityManager.flush();
+    }
+
+    private static Trip trip(String description) {
+        Trip trip = new Trip();
+        trip.setDescription(description);
+        trip.setStartDate(LocalDate.now());
+        trip.setEndDate(LocalDate.now().plusDays(3));
+        trip.setStatus(TripStatus.SCHEDULED);
+        return trip;
+    }
+
+    private static Booking booking(Employee employee, Trip trip) {
+        Booking booking = new Booking();
+        booking.setEmployee(employee);
+        booking.setTrip(trip);
+        return booking;
+    }
+}
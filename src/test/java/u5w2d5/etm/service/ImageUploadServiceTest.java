@@ -0,0 +1,97 @@
+package u5w2d5.etm.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityNotFoundException;
+import u5w2d5.etm.exception.ServiceUnavailableException;
+import u5w2d5.etm.response.ImageUploadJobDTO;
+import u5w2d5.etm.response.ImageUploadJobDTO.Status;
+
+/**
+ * Gli upload devono completarsi in background, essere visibili solo a chi li
+ * ha avviati e venire rifiutati con un 503 quando pool e coda sono pieni.
+ */
+class ImageUploadServiceTest {
+
+    @TempDir
+    Path storage;
+
+    private ImageUploadService imageUploadService;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (imageUploadService != null) {
+            imageUploadService.destroy();
+        }
+    }
+
+    @Test
+    void completesInBackground() throws Exception {
+        LocalImageUploader uploader = new LocalImageUploader(storage);
+        imageUploadService = new ImageUploadService(uploader, 2, 10, Duration.ofMinutes(5),
+                new SimpleMeterRegistry());
+
+        ImageUploadJobDTO job = imageUploadService.submit(file("avatar.png"), "mario.rossi");
+        assertThat(job.getStatus()).isIn(Status.PENDING, Status.RUNNING, Status.COMPLETED);
+
+        ImageUploadJobDTO completed = await(job.getId(), "mario.rossi");
+        assertThat(completed.getStatus()).isEqualTo(Status.COMPLETED);
+        assertThat(completed.getSecureUrl()).isEqualTo(uploader.stored("avatar.png").toUri().toString());
+        assertThat(completed.getCompletedAt()).isNotNull();
+        assertThat(Files.readString(uploader.stored("avatar.png"))).isEqualTo("avatar.png");
+
+        assertThatThrownBy(() -> imageUploadService.getJob(job.getId(), "luigi.verdi"))
+                .isInstanceOf(EntityNotFoundException.class);
+
+        ImageUploadJobDTO failed = await(imageUploadService.submit(file("fail.png"), "mario.rossi").getId(),
+                "mario.rossi");
+        assertThat(failed.getStatus()).isEqualTo(Status.FAILED);
+        assertThat(failed.getError()).isNotBlank();
+    }
+
+    @Test
+    void rejectsWhenSaturated() throws Exception {
+        LocalImageUploader uploader = new LocalImageUploader(storage);
+        uploader.hold();
+        imageUploadService = new ImageUploadService(uploader, 1, 1, Duration.ofMinutes(5),
+                new SimpleMeterRegistry());
+
+        // Uno in esecuzione (fermo sul gate) e uno in coda
+        String running = imageUploadService.submit(file("first.png"), "mario.rossi").getId();
+        String queued = imageUploadService.submit(file("second.png"), "mario.rossi").getId();
+        assertThatThrownBy(() -> imageUploadService.submit(file("third.png"), "mario.rossi"))
+                .isInstanceOf(ServiceUnavailableException.class);
+
+        uploader.release();
+        assertThat(await(running, "mario.rossi").getStatus()).isEqualTo(Status.COMPLETED);
+        assertThat(await(queued, "mario.rossi").getStatus()).isEqualTo(Status.COMPLETED);
+        assertThat(uploader.stored("third.png")).doesNotExist();
+    }
+
+    private static MockMultipartFile file(String name) {
+        return new MockMultipartFile("file", name, "image/png", name.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private ImageUploadJobDTO await(String id, String owner) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        ImageUploadJobDTO job = imageUploadService.getJob(id, owner);
+        while ((job.getStatus() == Status.PENDING || job.getStatus() == Status.RUNNING)
+                && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            job = imageUploadService.getJob(id, owner);
+        }
+        return job;
+    }
+}
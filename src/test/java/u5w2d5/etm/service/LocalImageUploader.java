@@ -0,0 +1,54 @@
+package u5w2d5.etm.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ImageUploader} per i test: al posto di Cloudinary copia il file in
+ * una cartella locale e restituisce il suo URI. Con {@link #hold()} gli upload
+ * restano fermi finché non viene chiamato {@link #release()}.
+ */
+class LocalImageUploader implements ImageUploader {
+
+    private final Path directory;
+    private volatile CountDownLatch gate = new CountDownLatch(0);
+
+    LocalImageUploader(Path directory) {
+        this.directory = directory;
+    }
+
+    void hold() {
+        gate = new CountDownLatch(1);
+    }
+
+    void release() {
+        gate.countDown();
+    }
+
+    Path stored(String publicId) {
+        return directory.resolve(publicId);
+    }
+
+    @Override
+    public String upload(File file, String publicId) throws IOException {
+        try {
+            if (!gate.await(10, TimeUnit.SECONDS)) {
+                throw new IOException("Upload timed out");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Upload interrupted", e);
+        }
+        if (publicId.startsWith("fail")) {
+            throw new IOException("Upload rejected by the stub");
+        }
+        Path target = stored(publicId);
+        Files.copy(file.toPath(), target, StandardCopyOption.REPLACE_EXISTING);
+        return target.toUri().toString();
+    }
+}
@@ -0,0 +1,101 @@
+package u5w2d5.etm.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import u5w2d5.etm.model.Employee;
+import u5w2d5.etm.model.Trip;
+import u5w2d5.etm.repository.EmployeeRepository;
+import u5w2d5.etm.repository.TripRepository;
+import u5w2d5.etm.response.SearchResultDTO;
+import u5w2d5.etm.response.SearchResultDTO.Type;
+
+/**
+ * Ricerca per prefisso sull'indice in memoria, senza database: fuori da una
+ * transazione gli aggiornamenti vengono applicati subito.
+ */
+class SearchIndexTest {
+
+    private SearchIndex searchIndex;
+
+    @BeforeEach
+    void setUp() {
+        EmployeeRepository employeeRepository = mock(EmployeeRepository.class);
+        TripRepository tripRepository = mock(TripRepository.class);
+        when(employeeRepository.findAllSummaries()).thenReturn(List.of());
+        when(tripRepository.findAllDescriptions()).thenReturn(List.of());
+        searchIndex = new SearchIndex(employeeRepository, tripRepository);
+        searchIndex.rebuild();
+
+        searchIndex.indexAfterCommit(employee(1L, "mrossi", "Mario", "Rossi", "mario.rossi@example.com"));
+        searchIndex.indexAfterCommit(employee(2L, "mbianchi", "Maria", "Bianchi", "maria.bianchi@example.com"));
+        searchIndex.indexAfterCommit(employee(3L, "ndamico", "Nicolò", "D'Amico", "nicolo.damico@example.com"));
+        searchIndex.indexAfterCommit(trip(10L, "Viaggio con destinazione Madrid"));
+    }
+
+    @Test
+    void matchesEveryPrefixOfTheQuery() {
+        assertThat(ids(searchIndex.search("mari", null, 20))).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(ids(searchIndex.search("mar ros", null, 20))).containsExactly(1L);
+        assertThat(ids(searchIndex.search("MARIO.ROSSI@", null, 20))).containsExactly(1L);
+    }
+
+    @Test
+    void ignoresAccentsAndPunctuation() {
+        assertThat(ids(searchIndex.search("nicolo", null, 20))).containsExactly(3L);
+        assertThat(ids(searchIndex.search("d'amico", null, 20))).containsExactly(3L);
+    }
+
+    @Test
+    void exactWordsComeBeforeCompletions() {
+        searchIndex.indexAfterCommit(employee(4L, "mar", "Mar", "Neri", "mar.neri@example.com"));
+        assertThat(ids(searchIndex.search("mar", null, 20))).first().isEqualTo(4L);
+    }
+
+    @Test
+    void filtersByTypeAndLimit() {
+        assertThat(searchIndex.search("ma", Type.EMPLOYEE, 20))
+                .extracting(SearchResultDTO::getType).containsOnly(Type.EMPLOYEE);
+        assertThat(searchIndex.search("ma", null, 1)).hasSize(1);
+        assertThatThrownBy(() -> searchIndex.search("ma", null, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> searchIndex.search(" - ", null, 20)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void followsUpdatesAndDeletes() {
+        searchIndex.indexAfterCommit(employee(1L, "mverdi", "Mario", "Verdi", "mario.verdi@example.com"));
+        assertThat(searchIndex.search("rossi", null, 20)).isEmpty();
+        assertThat(ids(searchIndex.search("verdi", null, 20))).containsExactly(1L);
+
+        searchIndex.removeTripAfterCommit(10L);
+        assertThat(searchIndex.search("madrid", null, 20)).isEmpty();
+    }
+
+    private static List<Long> ids(List<SearchResultDTO> results) {
+        return results.stream().map(SearchResultDTO::getId).toList();
+    }
+
+    private static Employee employee(Long id, String username, String firstName, String lastName, String email) {
+        Employee employee = new Employee();
+        employee.setId(id);
+        employee.setUsername(username);
+        employee.setFirstName(firstName);
+        employee.setLastName(lastName);
+        employee.setEmail(email);
+        return employee;
+    }
+
+    private static Trip trip(Long id, String description) {
+        Trip trip = new Trip();
+        trip.setId(id);
+        trip.setDescription(description);
+        return trip;
+    }
+}
@@ -0,0 +1,103 @@
+package u5w2d5.etm.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import u5w2d5.etm.exception.ConflictException;
+import u5w2d5.etm.repository.TripRepository;
+
+/**
+ * Molti thread si contendono i posti dello stesso viaggio, alternando
+ * prenotazioni e cancellazioni: alla fine i posti presi non devono mai
+ * superare la capienza.
+ */
+class SeatReservationEngineStressTest {
+
+    private static final long TRIP_ID = 1L;
+    private static final int CAPACITY = 100;
+    private static final int THREADS = 32;
+    private static final int ATTEMPTS_PER_THREAD = 10_000;
+
+    @Test
+    void concurrentReservationsNeverOverbook() throws Exception {
+        SeatReservationEngine engine = new SeatReservationEngine(mock(TripRepository.class));
+        engine.changeCapacityAfterCommit(TRIP_ID, null, CAPACITY, () -> 0L);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> held = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            held.add(executor.submit(() -> {
+                start.await();
+                int seats = 0;
+                for (int i = 0; i < ATTEMPTS_PER_THREAD; i++) {
+                    if (seats > 0 && ThreadLocalRandom.current().nextInt(4) == 0) {
+                        engine.release(TRIP_ID);
+                        seats--;
+                    } else if (engine.tryReserve(TRIP_ID)) {
+                        seats++;
+                    }
+                    assertThat(engine.getRemainingSeats(TRIP_ID)).isBetween(0, CAPACITY);
+                }
+                return seats;
+            }));
+        }
+        start.countDown();
+
+        int total = 0;
+        for (Future<Integer> seats : held) {
+            total += seats.get();
+        }
+        executor.shutdown();
+
+        assertThat(total).isLessThanOrEqualTo(CAPACITY);
+        assertThat(total + engine.getRemainingSeats(TRIP_ID)).isEqualTo(CAPACITY);
+    }
+
+    @Test
+    void tripsWithoutCapacityAlwaysAdmit() {
+        SeatReservationEngine engine = new SeatReservationEngine(mock(TripRepository.class));
+
+        for (int i = 0; i < 1_000; i++) {
+            assertThat(engine.tryReserve(TRIP_ID)).isTrue();
+        }
+        assertThat(engine.getRemainingSeats(TRIP_ID)).isNull();
+    }
+
+    @Test
+    void capacityAddedDuringOpenBookingsCountsThem() {
+        SeatReservationEngine engine = new SeatReservationEngine(mock(TripRepository.class));
+
+        // Due transazioni di prenotazione aperte sul viaggio ancora senza capienza
+        TransactionSynchronizationManager.initSynchronization();
+        List<TransactionSynchronization> openBookings;
+        try {
+            engine.reserve(TRIP_ID);
+            engine.reserve(TRIP_ID);
+            openBookings = TransactionSynchronizationManager.getSynchronizations();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        // La capienza arriva prima del loro commit, con una prenotazione già salvata
+        engine.changeCapacityAfterCommit(TRIP_ID, null, 3, () -> 1L);
+        assertThat(engine.getRemainingSeats(TRIP_ID)).isZero();
+
+        openBookings.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        assertThat(engine.getRemainingSeats(TRIP_ID)).isZero();
+        assertThatThrownBy(() -> engine.reserve(TRIP_ID)).isInstanceOf(ConflictException.class);
+    }
+}
@@ -0,0 +1,75 @@
+package u5w2d5.etm.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import u5w2d5.etm.model.Trip;
+import u5w2d5.etm.repository.TripRepository;
+
+/**
+ * L'albero degli intervalli deve restituire gli stessi viaggi di una scansione
+ * completa, nello stesso ordine, anche dopo inserimenti, spostamenti e
+ * cancellazioni casuali.
+ */
+class TripIntervalIndexTest {
+
+    private static final LocalDate BASE = LocalDate.of(2025, 1, 1);
+
+    @Test
+    void matchesLinearScan() {
+        TripRepository tripRepository = mock(TripRepository.class);
+        when(tripRepository.findAllIntervals()).thenReturn(List.of());
+        TripIntervalIndex index = new TripIntervalIndex(tripRepository);
+        index.rebuild();
+
+        Random random = new Random(7);
+        Map<Long, Trip> trips = new HashMap<>();
+        for (int operation = 0; operation < 5_000; operation++) {
+            long id = random.nextInt(1_000) + 1;
+            if (random.nextInt(5) == 0) {
+                trips.remove(id);
+                index.removeAfterCommit(id);
+            } else {
+                Trip trip = trip(id, random);
+                trips.put(id, trip);
+                index.putAfterCommit(trip);
+            }
+
+            if (operation % 50 == 0) {
+                LocalDate from = BASE.plusDays(random.nextInt(400));
+                LocalDate to = from.plusDays(random.nextInt(30));
+                assertThat(index.findOverlapping(from, to)).isEqualTo(scan(trips, from, to));
+                assertThat(index.findOverlapping(null, to)).isEqualTo(scan(trips, null, to));
+                assertThat(index.findOverlapping(from, null)).isEqualTo(scan(trips, from, null));
+            }
+        }
+        assertThat(index.size()).isEqualTo(trips.size());
+    }
+
+    private static Trip trip(long id, Random random) {
+        Trip trip = new Trip();
+        trip.setId(id);
+        trip.setStartDate(BASE.plusDays(random.nextInt(365)));
+        trip.setEndDate(trip.getStartDate().plusDays(random.nextInt(15)));
+        return trip;
+    }
+
+    private static List<Long> scan(Map<Long, Trip> trips, LocalDate from, LocalDate to) {
+        return trips.values().stream()
+                .filter(trip -> (to == null || !trip.getStartDate().isAfter(to))
+                        && (from == null || !trip.getEndDate().isBefore(from)))
+                .sorted(Comparator.comparing(Trip::getStartDate).thenComparing(Trip::getId))
+                .map(Trip::getId)
+                .toList();
+    }
+}
@@ -0,0 +1,104 @@
+package u5w2d5.etm.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import u5w2d5.etm.model.Trip;
+import u5w2d5.etm.model.TripStatus;
+import u5w2d5.etm.repository.TripRepository;
+
+/**
+ * Le transizioni devono seguire le date, lasciare stare i viaggi annullati e
+ * incrementare la versione delle sole righe aggiornate, anche con blocchi più
+ * piccoli del numero di viaggi.
+ */
+@DataJpaTest(properties = "etm.trip-status.chunk-size=2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(TripStatusScheduler.class)
+class TripStatusSchedulerTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2025, 6, 15);
+
+    @TestConfiguration
+    static class Metrics {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private TripStatusScheduler tripStatusScheduler;
+
+    @Autowired
+    private TripRepository tripRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterEach
+    void tearDown() {
+        tripRepository.deleteAll();
+    }
+
+    @Test
+    void movesTripsAlongTheirDates() {
+        Trip future = save(TripStatus.SCHEDULED, 5, 10);
+        Trip startingToday = save(TripStatus.SCHEDULED, 0, 3);
+        Trip running = save(TripStatus.SCHEDULED, -2, 2);
+        Trip endingToday = save(TripStatus.IN_PROGRESS, -5, 0);
+        Trip ended = save(TripStatus.IN_PROGRESS, -5, -1);
+        Trip missed = save(TripStatus.SCHEDULED, -10, -3);
+        Trip cancelled = save(TripStatus.CANCELLED, -2, 2);
+
+        assertThat(tripStatusScheduler.updateStatuses(TODAY)).isTrue();
+
+        assertStatus(future, TripStatus.SCHEDULED, false);
+        assertStatus(startingToday, TripStatus.IN_PROGRESS, true);
+        assertStatus(running, TripStatus.IN_PROGRESS, true);
+        assertStatus(endingToday, TripStatus.IN_PROGRESS, false);
+        assertStatus(ended, TripStatus.COMPLETED, true);
+        assertStatus(missed, TripStatus.COMPLETED, true);
+        assertStatus(cancelled, TripStatus.CANCELLED, false);
+
+        assertThat(meterRegistry.get("etm.trips.status.transitions").tag("status", "IN_PROGRESS").counter()
+                .count()).isEqualTo(2);
+        assertThat(meterRegistry.get("etm.trips.status.transitions").tag("status", "COMPLETED").counter()
+                .count()).isEqualTo(2);
+
+        // Una seconda esecuzione lo stesso giorno non cambia nulla
+        tripStatusScheduler.updateStatuses(TODAY);
+        assertStatus(running, TripStatus.IN_PROGRESS, true);
+        assertThat(meterRegistry.get("etm.trips.status.job").tag("outcome", "completed").timer().count())
+                .isEqualTo(2);
+    }
+
+    private Trip save(TripStatus status, int startOffset, int endOffset) {
+        Trip trip = new Trip();
+        trip.setDescription("Viaggio " + status + " " + startOffset);
+        trip.setStartDate(TODAY.plusDays(startOffset));
+        trip.setEndDate(TODAY.plusDays(endOffset));
+        trip.setStatus(status);
+        return tripRepository.save(trip);
+    }
+
+    private void assertStatus(Trip trip, TripStatus status, boolean updated) {
+        Trip current = tripRepository.findById(trip.getId()).orElseThrow();
+        assertThat(current.getStatus()).isEqualTo(status);
+        assertThat(current.getVersion()).isEqualTo(updated ? trip.getVersion() + 1 : trip.getVersion());
+    }
+}